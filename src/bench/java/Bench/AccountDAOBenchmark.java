@@ -0,0 +1,49 @@
+package Bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.AccountDAO;
+import Model.Account;
+
+/**
+ * AccountDAO lookups used by login and message creation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AccountDAOBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    private AccountDAO accountDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(ACCOUNTS, 0);
+        accountDAO = new AccountDAO();
+    }
+
+    @Benchmark
+    public Account getAccountByUsername() {
+        int user = 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        return accountDAO.getAccountByUsername("bench_user_" + user);
+    }
+
+    @Benchmark
+    public Account getAccountById() {
+        return accountDAO.getAccountById(2 + ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    }
+}
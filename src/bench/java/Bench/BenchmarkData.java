@@ -0,0 +1,55 @@
+package Bench;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+
+/**
+ * Seeding fixture shared by the benchmarks. Resets the benchmark database (-Ddb.url, set by the benchmark
+ * profile) and fills it with a known number of accounts and messages.
+ */
+public class BenchmarkData {
+    public static final String PASSWORD = "password";
+    private static final int CHUNK = 1000;
+
+    /**
+     * Reset the schema and insert accounts bench_user_1..bench_user_N (account_id 2..N+1, after the seeded
+     * testuser1) and the given number of messages spread over all accounts. The seed row from SocialMedia.sql
+     * is kept, so message ids run from 1 to messages + 1.
+     */
+    public static void seed(int accounts, int messages) {
+        ConnectionUtil.resetTestDatabase();
+
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO Account(username, password) VALUES(?, ?);")) {
+            for (int i = 1; i <= accounts; i++) {
+                preparedStatement.setString(1, "bench_user_" + i);
+                preparedStatement.setString(2, PASSWORD);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not seed accounts", e);
+        }
+
+        MessageDAO messageDAO = new MessageDAO();
+        Random random = new Random(42);
+        List<Message> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < messages; i++) {
+            chunk.add(new Message(1 + random.nextInt(accounts + 1), "benchmark message " + i, 1669947792L + i));
+            if (chunk.size() == CHUNK || i == messages - 1) {
+                if (messageDAO.addMessages(chunk) == null) {
+                    throw new IllegalStateException("Could not seed messages");
+                }
+                chunk.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package Bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * GET /messages for feeds of 1k, 10k and 100k messages, with and without gzip.
+ * Sample mode reports the latency percentiles (p99 included). The body size on the wire is the same on every call,
+ * so it is measured once per trial and printed. Tune the server with -Djmh.args="... -jvmArgs -Dcompression.level=1".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompressionBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    public int messages;
+
+    @Param({ "gzip", "identity" })
+    public String encoding;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(100, messages - 1); // Plus the seeded row
+        app = new SocialMediaController().startAPI();
+        app.start(0);
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + app.port() + "/messages"))
+                .header("Accept-Encoding", encoding)
+                .build();
+        try {
+            System.out.println("# " + encoding + " /messages with " + messages + " messages: " + getAllMessages() + " bytes on the wire");
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public int getAllMessages() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+        return response.body().length; // The client does not decode gzip, so this is the size on the wire
+    }
+}
@@ -0,0 +1,83 @@
+package Bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * Request throughput with many requests in flight at once, on Jetty's platform thread pool versus virtual threads.
+ * Each operation fires CONCURRENCY requests that block on JDBC in the handler and waits for all of them.
+ * The adaptive concurrency limiter and the bulkheads are off, so every request runs on a Jetty thread
+ * (see LoadSheddingBenchmark for them).
+ */
+@State(Scope.Benchmark)
+@Fork(jvmArgsAppend = { "-Dlimiter.enabled=false", "-Dbulkhead.enabled=false" })
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ConcurrencyBenchmark {
+    private static final int CONCURRENCY = 1000;
+    private static final int MESSAGES = 10_000;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(100, MESSAGES);
+        app = new SocialMediaController().startAPI("virtual".equals(threads));
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public void getMessageByIdConcurrently() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[CONCURRENCY];
+        for (int i = 0; i < CONCURRENCY; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/messages/" + (1 + ThreadLocalRandom.current().nextInt(MESSAGES))))
+                    .build();
+            responses[i] = webClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("GET /messages returned " + response.statusCode());
+                        }
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+}
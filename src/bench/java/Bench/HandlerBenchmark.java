@@ -0,0 +1,97 @@
+package Bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * End-to-end handler latency: a real Javalin server on a free port, called over loopback HTTP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HandlerBenchmark {
+    private static final int ACCOUNTS = 100;
+    private static final int MESSAGES = 10_000;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(ACCOUNTS, MESSAGES);
+        System.setProperty("ratelimit.messages.create.perSecond", "0"); // Measure the handler, not 429s
+        app = new SocialMediaController().startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public int getMessageById() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/" + (1 + ThreadLocalRandom.current().nextInt(MESSAGES))))
+                .build());
+    }
+
+    @Benchmark
+    public int getMessagesByUser() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/accounts/" + (1 + ThreadLocalRandom.current().nextInt(ACCOUNTS)) + "/messages"))
+                .build());
+    }
+
+    @Benchmark
+    public int createMessage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, \"message_text\": \"benchmark post\", \"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+
+    @Benchmark
+    public int login() throws IOException, InterruptedException {
+        int user = 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        return send(HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"bench_user_" + user + "\", \"password\": \"" + BenchmarkData.PASSWORD + "\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
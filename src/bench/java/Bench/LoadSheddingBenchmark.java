@@ -0,0 +1,110 @@
+package Bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+/**
+ * Point read latency while full-feed scans flood the server: one thread keeps FEED_BURST GET /messages in flight,
+ * the others read single messages. With the adaptive limiter the scans past its bulk share are refused with 503
+ * and the point reads keep their latency; compare with -jvmArgsAppend -Dlimiter.enabled=false. The scans also
+ * queue on the feed bulkhead only, away from the point reads; -Dbulkhead.enabled=false runs both on Jetty threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LoadSheddingBenchmark {
+    private static final int MESSAGES = 10_000;
+    private static final int FEED_BURST = 64;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long ok;
+        public long shed;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            ok = 0;
+            shed = 0;
+        }
+
+        void count(int status) {
+            if (status == 503) {
+                shed++;
+            } else {
+                ok++;
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(100, MESSAGES);
+        app = new SocialMediaController().startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public void pointRead(Outcomes outcomes) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/messages/" + (1 + ThreadLocalRandom.current().nextInt(MESSAGES))))
+                .build();
+        outcomes.count(webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void feedScans(Outcomes outcomes) {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[FEED_BURST];
+        for (int i = 0; i < FEED_BURST; i++) {
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + "/messages")).build();
+            responses[i] = webClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenAccept(response -> {
+                        synchronized (outcomes) {
+                            outcomes.count(response.statusCode());
+                        }
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+}
@@ -0,0 +1,67 @@
+package Bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+/**
+ * MessageDAO hot paths at several table sizes. addMessage should stay flat as the table grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageDAOBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private MessageDAO messageDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.seed(100, tableSize);
+        messageDAO = new MessageDAO();
+    }
+
+    @Benchmark
+    public Message addMessage() {
+        return messageDAO.addMessage("benchmark post", 1, 1669947792L);
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageDAO.getMessageById(1 + ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByUser() {
+        return messageDAO.getMessagesByUser(1 + ThreadLocalRandom.current().nextInt(100));
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() {
+        return messageDAO.getAllMessages();
+    }
+
+    @Benchmark
+    public void streamAllMessages(Blackhole blackhole) {
+        messageDAO.streamAllMessages(blackhole::consume);
+    }
+}
@@ -0,0 +1,45 @@
+package Bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.JsonSupport;
+
+/**
+ * Parsing a PATCH /messages/{message_id} body: the old per-request ObjectMapper reading a Map, against the
+ * streaming parse the handler uses now. Run with -prof gc for allocations per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PatchParseBenchmark {
+    private static final byte[] BODY = "{\"message_text\": \"updated benchmark message\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Object newMapperPerRequest() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, Object> requestBody = objectMapper.readValue(new String(BODY, StandardCharsets.UTF_8), new TypeReference<Map<String, Object>>() {});
+        return requestBody.get("message_text");
+    }
+
+    @Benchmark
+    public String streamingParse() throws IOException {
+        return JsonSupport.readMessageText(BODY);
+    }
+}
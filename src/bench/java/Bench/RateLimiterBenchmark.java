@@ -0,0 +1,50 @@
+package Bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Service.RateLimiter;
+
+/**
+ * Cost of one rate limit check under 16 threads, spread over many callers' buckets or all hitting the same one.
+ * A rejected check costs the same as an admitted one, so the limit is set high enough that both are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+public class RateLimiterBenchmark {
+    @Param({"1", "10000"})
+    public int accounts;
+
+    private RateLimiter limiter;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter("bench", 100_000, 1000);
+        keys = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            keys[i] = "account:" + (i + 1);
+        }
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return limiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(accounts)]);
+    }
+}
@@ -0,0 +1,61 @@
+package Bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.JsonSupport;
+import Model.Message;
+
+/**
+ * Jackson serialization of Message lists of the sizes the feed endpoints return, with a plain ObjectMapper and
+ * with the shared mapper the server installs (JsonSupport.MAPPER). Run with -prof gc for allocations per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int listSize;
+
+    @Param({"plain", "shared"})
+    public String mapper;
+
+    private ObjectMapper objectMapper;
+    private List<Message> messages;
+
+    @Setup
+    public void setUp() {
+        objectMapper = mapper.equals("shared") ? JsonSupport.MAPPER : new ObjectMapper();
+        messages = new ArrayList<>(listSize);
+        for (int i = 1; i <= listSize; i++) {
+            messages.add(new Message(i, 1 + i % 100, "benchmark message " + i, 1669947792L + i));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeMessageList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] serializeMessage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(messages.get(0));
+    }
+}
@@ -0,0 +1,65 @@
+package Bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+/**
+ * MessageDAO throughput with 16 writer threads as the message table is split over more h2 databases.
+ * Writes to different shards commit independently, so addMessage should scale with the shard count;
+ * getMessageById asks every shard and shows what the scatter-gather costs a point read.
+ * The shard count is read once per JVM, so keep forks on (the default) when comparing counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+public class ShardingBenchmark {
+    private static final int ACCOUNTS = 100;
+    private static final int MESSAGES = 10_000;
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    private MessageDAO messageDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("messages.shards", String.valueOf(shards)); // Before anything touches ShardRouter
+        BenchmarkData.seed(ACCOUNTS, MESSAGES);
+        messageDAO = new MessageDAO();
+    }
+
+    @Benchmark
+    public Message addMessage() {
+        return messageDAO.addMessage("benchmark post", 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS + 1), 1669947792L);
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageDAO.getMessageById(1 + ThreadLocalRandom.current().nextInt(MESSAGES));
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByUser() {
+        return messageDAO.getMessagesByUser(1 + ThreadLocalRandom.current().nextInt(ACCOUNTS + 1));
+    }
+}
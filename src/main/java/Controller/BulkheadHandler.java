@@ -0,0 +1,38 @@
+package Controller;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import java.util.function.Function;
+import Service.Bulkhead;
+
+/**
+ * Wraps a route handler so it only runs with a slot from the bulkhead of its route class, waiting in that
+ * bulkhead's queue if need be. The handler still runs on the request's own thread. A request whose bulkhead
+ * is full is answered 503 at once.
+ *
+ * It sits inside LimitedHandler, so a request only queues here once the limiter has admitted it, and the
+ * limiter's latency samples include the time spent in the queue.
+ */
+public class BulkheadHandler implements Handler {
+    private final Function<Context, Bulkhead> bulkhead;
+    private final Handler delegate;
+
+    public BulkheadHandler(Function<Context, Bulkhead> bulkhead, Handler delegate) {
+        this.bulkhead = bulkhead;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void handle(Context ctx) throws Exception {
+        Bulkhead pool = bulkhead.apply(ctx);
+        if (!pool.enter()) {
+            ctx.status(503).result(""); // This route class is saturated, the client should back off and retry
+            return;
+        }
+        try {
+            delegate.handle(ctx);
+        } finally {
+            pool.exit();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package Controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import io.javalin.json.JavalinJackson;
+import java.io.IOException;
+
+/**
+ * The one ObjectMapper for request and response bodies, installed as Javalin's JsonMapper in startAPI.
+ * It starts from Javalin's default configuration and adds Blackbird, which replaces the reflective getter and
+ * setter calls on Message, Account and the other models with generated lambdas.
+ * ObjectMapper is thread-safe once configured, so handlers share it instead of creating their own.
+ */
+public class JsonSupport {
+    public static final ObjectMapper MAPPER = JavalinJackson.defaultMapper().registerModule(new BlackbirdModule());
+
+    /**
+     * Read message_text from a PATCH body with a streaming parser, without building a Map; other fields are skipped.
+     * @return the text, or null if the body is not an object or message_text is missing or not a string
+     * @throws IOException if the body is not valid JSON
+     */
+    public static String readMessageText(byte[] body) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String message_text = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("message_text")) {
+                    message_text = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return message_text;
+        }
+    }
+}
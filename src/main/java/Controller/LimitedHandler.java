@@ -0,0 +1,37 @@
+package Controller;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import java.util.function.Function;
+import Service.ConcurrencyLimiter;
+
+/**
+ * Wraps a route handler so it only runs with a slot from the ConcurrencyLimiter; without one the request is
+ * answered 503 at once, before it reads the body or touches the database.
+ * The priority is chosen per request, so one route can serve cheap and bulk requests differently.
+ */
+public class LimitedHandler implements Handler {
+    private final ConcurrencyLimiter limiter;
+    private final Function<Context, ConcurrencyLimiter.Priority> priority;
+    private final Handler delegate;
+
+    public LimitedHandler(ConcurrencyLimiter limiter, Function<Context, ConcurrencyLimiter.Priority> priority, Handler delegate) {
+        this.limiter = limiter;
+        this.priority = priority;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void handle(Context ctx) throws Exception {
+        ConcurrencyLimiter.Permit permit = limiter.tryAcquire(priority.apply(ctx));
+        if (permit == null) {
+            ctx.status(503).result(""); // Overloaded, the client should back off and retry
+            return;
+        }
+        try {
+            delegate.handle(ctx);
+        } finally {
+            permit.release();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package Controller;
+
+import io.javalin.http.Context;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * Gzip response compression negotiated from Accept-Encoding (q-values honoured, gzip;q=0 refuses it).
+ *
+ * Buffered results are compressed by an after-handler (compressResult); streamed responses write through
+ * outputStream(ctx), which holds back the first minSize bytes before deciding, so short streams go out as-is.
+ * Deflating always goes into a memory buffer that is then written to the socket, so the compression time in the
+ * metrics is CPU spent by the request thread and not time spent waiting on the client.
+ *
+ * Tuned with -Dcompression.enabled (default true), -Dcompression.level (1-9, default 6) and
+ * -Dcompression.minSize (bytes, default 1500).
+ */
+public class ResponseCompression {
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("compression.enabled", "true"));
+    static final int LEVEL = Integer.getInteger("compression.level", 6);
+    static final int MIN_SIZE = Integer.getInteger("compression.minSize", 1500);
+
+    private static final LongAdder GZIP_RESPONSES = Metrics.counter("http_responses_compressed_total", "Responses by content encoding", "encoding=\"gzip\"");
+    private static final LongAdder IDENTITY_RESPONSES = Metrics.counter("http_responses_compressed_total", "Responses by content encoding", "encoding=\"identity\"");
+    private static final LongAdder BYTES_IN = Metrics.counter("http_compression_bytes_in_total", "Response bytes before compression", "");
+    private static final LongAdder BYTES_OUT = Metrics.counter("http_compression_bytes_out_total", "Response bytes after compression", "");
+    private static final LatencyHistogram COMPRESSION_TIME = Metrics.histogram("http_compression_duration_seconds", "Time spent deflating one response", "");
+
+    /**
+     * After-handler: gzip the buffered result if the client accepts it and it is at least minSize bytes.
+     */
+    public static void compressResult(Context ctx) throws IOException {
+        InputStream result = ctx.resultInputStream();
+        if (!ENABLED || result == null || ctx.res().containsHeader("Content-Encoding")) {
+            return;
+        }
+        byte[] body = result.readAllBytes();
+        ctx.result(body); // The stream has been consumed, put the bytes back
+        if (body.length < MIN_SIZE) {
+            return; // Too small to be worth it, and not counted
+        }
+        ctx.header("Vary", "Accept-Encoding");
+        if (!acceptsGzip(ctx.header("Accept-Encoding"))) {
+            IDENTITY_RESPONSES.increment();
+            return;
+        }
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = gzip(compressed)) {
+            gzip.write(body);
+        }
+        COMPRESSION_TIME.recordNanos(System.nanoTime() - start);
+        record(body.length, compressed.size());
+        ctx.header("Content-Encoding", "gzip").result(compressed.toByteArray());
+    }
+
+    /**
+     * @return the response stream for a streamed body; close it to finish the response (the servlet stream stays open)
+     */
+    public static OutputStream outputStream(Context ctx) {
+        if (!ENABLED) {
+            return new DeferredGzipStream(ctx, false);
+        }
+        ctx.header("Vary", "Accept-Encoding");
+        return new DeferredGzipStream(ctx, acceptsGzip(ctx.header("Accept-Encoding")));
+    }
+
+    /**
+     * @return true if the Accept-Encoding header allows gzip, explicitly or through *, with a non-zero q-value
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        boolean wildcard = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = accepted;
+            } else if (coding.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return gzip != null ? gzip : wildcard;
+    }
+
+    private static GZIPOutputStream gzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(LEVEL);
+            }
+        };
+    }
+
+    private static void record(long bytesIn, long bytesOut) {
+        GZIP_RESPONSES.increment();
+        BYTES_IN.add(bytesIn);
+        BYTES_OUT.add(bytesOut);
+    }
+
+    /**
+     * Buffers the first minSize bytes; once the body reaches that size the Content-Encoding is set and the rest is
+     * deflated chunk by chunk. A body that ends before the threshold is written uncompressed.
+     */
+    private static class DeferredGzipStream extends OutputStream {
+        private final Context ctx;
+        private final boolean gzipAccepted;
+        private final OutputStream out;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream(MIN_SIZE);
+        private ByteArrayOutputStream staging;
+        private GZIPOutputStream gzip;
+        private long bytesIn;
+        private long bytesOut;
+        private long compressionNanos;
+        private boolean identity;
+
+        DeferredGzipStream(Context ctx, boolean gzipAccepted) {
+            this.ctx = ctx;
+            this.gzipAccepted = gzipAccepted;
+            this.out = ctx.outputStream();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (gzip != null) {
+                deflate(b, off, len);
+            } else if (identity) {
+                out.write(b, off, len);
+            } else {
+                pending.write(b, off, len);
+                if (pending.size() >= MIN_SIZE) {
+                    decide();
+                }
+            }
+        }
+
+        // Called once: start gzip, or fall back to identity, and send what was held back
+        private void decide() throws IOException {
+            byte[] held = pending.toByteArray();
+            pending = null;
+            if (gzipAccepted && held.length >= MIN_SIZE) {
+                ctx.header("Content-Encoding", "gzip");
+                staging = new ByteArrayOutputStream(8192);
+                gzip = gzip(staging);
+                deflate(held, 0, held.length);
+            } else {
+                identity = true;
+                if (held.length >= MIN_SIZE) {
+                    IDENTITY_RESPONSES.increment();
+                }
+                out.write(held);
+            }
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            gzip.write(b, off, len);
+            compressionNanos += System.nanoTime() - start;
+            bytesIn += len;
+            send();
+        }
+
+        private void send() throws IOException {
+            if (staging.size() > 0) {
+                bytesOut += staging.size();
+                staging.writeTo(out);
+                staging.reset();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (gzip != null || identity) {
+                out.flush(); // Nothing is forced out of the deflater or the held-back buffer before the decision
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (pending != null) {
+                decide();
+            }
+            if (gzip != null) {
+                long start = System.nanoTime();
+                gzip.finish();
+                compressionNanos += System.nanoTime() - start;
+                send();
+                COMPRESSION_TIME.recordNanos(compressionNanos);
+                record(bytesIn, bytesOut);
+                gzip = null;
+            }
+            out.flush();
+        }
+    }
+}
@@ -2,41 +2,259 @@ package Controller;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.json.JavalinJackson;
 import java.util.*;
+import DAO.Repositories;
 import Model.Account;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
 import Service.AccountService;
+import Service.Bulkhead;
+import Service.ConcurrencyLimiter;
+import Service.ConcurrencyLimiter.Priority;
+import Service.MessageFeed;
 import Service.MessageService;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.type.TypeReference;
+import Service.PageCursor;
+import Service.RateLimiter;
+import Service.SessionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import Util.ConnectionUtil;
+import Util.DataAccessException;
+import Util.Metrics;
+import Util.ReplicaShipper;
 
 public class SocialMediaController {
+    private static final Logger logger = LoggerFactory.getLogger(SocialMediaController.class);
+
+    // Page size bounds for keyset pagination (?after=&limit=)
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Largest number of messages accepted by one POST /messages/batch
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("messages.maxBatchSize", 1000);
+    // GET /messages streams rows straight from the cursor into the response, -Dmessages.stream=false builds the list instead
+    private static final boolean STREAM_MESSAGES = Boolean.parseBoolean(System.getProperty("messages.stream", "true"));
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+
+    // Bound the requests each route class runs and queues at once, so one class cannot take every thread and connection.
+    // -Dbulkhead.enabled=false leaves only the concurrency limiter
+    private static final boolean BULKHEADS = Boolean.parseBoolean(System.getProperty("bulkhead.enabled", "true"));
+    // Run request handlers on virtual threads (-Dserver.virtualThreads=true) instead of Jetty's platform thread pool.
+    // Handlers block on JDBC; the connection pool still bounds how many of them reach h2 at once.
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("server.virtualThreads");
+    // Size of the platform thread pool when virtual threads are off
+    private static final int MAX_THREADS = Integer.getInteger("server.maxThreads", 250);
+    // Reject message writes without a session token (-Dsessions.required=true); by default anonymous writes are still accepted
+    private static final boolean SESSIONS_REQUIRED = Boolean.getBoolean("sessions.required");
+    // Without virtual threads, open live feeds may hold at most 1/FEED_THREAD_SHARE of the server's threads
+    private static final int FEED_THREAD_SHARE = 4;
+    // Seconds between keep-alive comments on an idle live feed, overridable with -Dfeed.keepAliveSeconds
+    private static final long FEED_KEEP_ALIVE_SECONDS = Long.getLong("feed.keepAliveSeconds", 15);
+    // Response header carrying the token issued by /register and /login
+    private static final String SESSION_HEADER = "X-Session-Token";
+    // Session value for a request that carried no token
+    private static final int ANONYMOUS = 0;
+
+    private static final byte[] FEED_COMMENT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
     // Declare service variables
     AccountService accountService;
     MessageService messageService;
+    SessionService sessionService;
+    // Per-account write limits, see RateLimiter for the -Dratelimit.<route>.* properties
+    RateLimiter createMessageLimiter;
+    RateLimiter updateMessageLimiter;
+    // Requests handled at once, shared by every limited route
+    ConcurrencyLimiter concurrencyLimiter;
+    // One pool per route class, created by startAPI: logins, point reads, full feed scans and writes
+    Bulkhead authPool;
+    Bulkhead readPool;
+    Bulkhead feedPool;
+    Bulkhead writePool;
 
     // Constructor which instantiates service variables
     public SocialMediaController() {
-        this.accountService = new AccountService();
-        this.messageService = new MessageService();
+        this(Repositories.create());
+    }
+
+    // Constructor for a given storage engine, e.g. Repositories.inMemory()
+    public SocialMediaController(Repositories repositories) {
+        this.accountService = new AccountService(repositories.getAccounts());
+        this.messageService = new MessageService(repositories.getMessages());
+        this.sessionService = new SessionService();
+        this.createMessageLimiter = RateLimiter.forRoute("messages.create", 10, 20);
+        this.updateMessageLimiter = RateLimiter.forRoute("messages.update", 5, 10);
+        this.concurrencyLimiter = new ConcurrencyLimiter();
     }
 
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
-
-        app.get("example-endpoint", this::exampleHandler);
-        app.post("/register", this::createNewAccountHandler);
-        app.post("login", this::authenticateAccountHandler);
-        app.post("/messages", this::createNewMessageHandler);
-        app.get("/messages", this::getAllMessagesHandler);
-        app.get("/messages/{message_id}", this::getMessageByIdHandler);
-        app.delete("/messages/{message_id}", this::deleteMessageByIdHandler);
-        app.patch("/messages/{message_id}", this::updateMessageByIdHandler);
-        app.get("/accounts/{account_id}/messages", this::getAllMessagesByUserHandler);
+        return startAPI(VIRTUAL_THREADS);
+    }
+
+    public Javalin startAPI(boolean virtualThreads) {
+        Javalin app = Javalin.create(config -> {
+            config.jetty.server(() -> new Server(threadPool(virtualThreads)));
+            config.compression.none(); // Replaced by ResponseCompression, which is tunable and reports metrics
+            config.jsonMapper(new JavalinJackson(JsonSupport.MAPPER));
+        });
+        app.after(ResponseCompression::compressResult);
+
+        if (!virtualThreads) {
+            // Each open live feed holds a Jetty thread for as long as it lasts, so feeds may only take a share of them
+            messageService.getFeed().limitSubscribers(MAX_THREADS / FEED_THREAD_SHARE);
+        }
+
+        authPool = Bulkhead.forPool("auth", 8, 16);
+        readPool = Bulkhead.forPool("reads", 32, 32);
+        feedPool = Bulkhead.forPool("feed", 4, 4);
+        writePool = Bulkhead.forPool("writes", 16, 16);
+
+        route(app, HandlerType.GET, "/example-endpoint", readPool, this::exampleHandler);
+        route(app, HandlerType.POST, "/register", ctx -> Priority.CRITICAL, ctx -> authPool, this::createNewAccountHandler);
+        route(app, HandlerType.POST, "/login", ctx -> Priority.CRITICAL, ctx -> authPool, this::authenticateAccountHandler);
+        route(app, HandlerType.POST, "/logout", ctx -> Priority.CRITICAL, ctx -> authPool, this::logoutHandler);
+        route(app, HandlerType.POST, "/messages", writePool, this::createNewMessageHandler);
+        route(app, HandlerType.POST, "/messages/batch", ctx -> Priority.BULK, ctx -> writePool, this::createMessageBatchHandler);
+        route(app, HandlerType.GET, "/messages", ctx -> isPageRequest(ctx) ? Priority.NORMAL : Priority.BULK,
+                ctx -> isPageRequest(ctx) ? readPool : feedPool, this::getAllMessagesHandler);
+        route(app, HandlerType.GET, "/messages/search", readPool, this::searchMessagesHandler); // Before {message_id} so "search" is not taken as an id
+        app.get("/messages/live", this::liveFeedHandler); // Not timed, the response lasts as long as the connection
+        route(app, HandlerType.GET, "/messages/{message_id}", readPool, this::getMessageByIdHandler);
+        route(app, HandlerType.DELETE, "/messages/{message_id}", writePool, this::deleteMessageByIdHandler);
+        route(app, HandlerType.PATCH, "/messages/{message_id}", writePool, this::updateMessageByIdHandler);
+        route(app, HandlerType.GET, "/accounts/{account_id}/messages", readPool, this::getAllMessagesByUserHandler);
+        app.get("/metrics", this::metricsHandler);
+
+        app.events(event -> {
+            event.serverStopping(messageService.getFeed()::closeAll); // Release the threads held by live feeds
+            event.serverStopped(messageService::shutdown); // Commit the queued messages and stop the group-commit writer
+        });
+
+        registerMetrics();
         return app;
     }
 
+    // Jetty keeps its acceptor and selector threads; with virtual threads each request is then dispatched to a new virtual thread
+    private QueuedThreadPool threadPool(boolean virtualThreads) {
+        QueuedThreadPool threadPool = new QueuedThreadPool(MAX_THREADS, 8, 60_000);
+        threadPool.setName("JettyServerThreadPool");
+        if (virtualThreads) {
+            threadPool.setVirtualThreadsExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return threadPool;
+    }
+
+    // Register a route at normal priority on one pool
+    private void route(Javalin app, HandlerType method, String path, Bulkhead pool, Handler handler) {
+        route(app, method, path, ctx -> Priority.NORMAL, ctx -> pool, handler);
+    }
+
+    // Register a route that runs behind the concurrency limiter and then its route class's bulkhead, and whose latency
+    // (503s included) is recorded per status code and exported by GET /metrics
+    private void route(Javalin app, HandlerType method, String path, Function<Context, Priority> priority, Function<Context, Bulkhead> pool, Handler handler) {
+        Handler bounded = BULKHEADS ? new BulkheadHandler(pool, handler) : handler;
+        app.addHandler(method, path, new TimedHandler(method, path, new LimitedHandler(concurrencyLimiter, priority, bounded)));
+    }
+
+    // Gauges read at scrape time: connection pool, caches, bulkheads, replica lag and the group-commit queue
+    private void registerMetrics() {
+        Metrics.gauge("db_pool_connections", "Connections in the pool by state", "state=\"active\"", () -> ConnectionUtil.getPoolStats().getActive());
+        Metrics.gauge("db_pool_connections", "Connections in the pool by state", "state=\"idle\"", () -> ConnectionUtil.getPoolStats().getIdle());
+        Metrics.gauge("db_pool_waiting_threads", "Threads waiting for a pooled connection", "", () -> ConnectionUtil.getPoolStats().getWaiting());
+        Metrics.gauge("db_pool_max_connections", "Maximum size of the connection pool", "", () -> ConnectionUtil.getPoolStats().getMaxSize());
+        Metrics.counterFunction("db_pool_acquire_total", "Connections handed out by the pool", "", () -> ConnectionUtil.getPoolStats().getAcquireCount());
+        Metrics.counterFunction("db_pool_acquire_seconds_total", "Time spent waiting for pooled connections", "", () -> ConnectionUtil.getPoolStats().getAcquireNanos() / 1e9);
+
+        AccountService accounts = accountService;
+        MessageService messages = messageService;
+        Metrics.counterFunction("cache_hits_total", "Cache hits", "cache=\"account_id\"", () -> accounts.getIdCacheStats().hitCount());
+        Metrics.counterFunction("cache_misses_total", "Cache misses", "cache=\"account_id\"", () -> accounts.getIdCacheStats().missCount());
+        Metrics.counterFunction("cache_evictions_total", "Cache evictions", "cache=\"account_id\"", () -> accounts.getIdCacheStats().evictionCount());
+        Metrics.counterFunction("cache_hits_total", "Cache hits", "cache=\"username\"", () -> accounts.getUsernameCacheStats().hitCount());
+        Metrics.counterFunction("cache_misses_total", "Cache misses", "cache=\"username\"", () -> accounts.getUsernameCacheStats().missCount());
+        Metrics.counterFunction("cache_evictions_total", "Cache evictions", "cache=\"username\"", () -> accounts.getUsernameCacheStats().evictionCount());
+        Metrics.counterFunction("cache_hits_total", "Cache hits", "cache=\"timeline\"", () -> messages.getTimelineCacheStats().hitCount());
+        Metrics.counterFunction("cache_misses_total", "Cache misses", "cache=\"timeline\"", () -> messages.getTimelineCacheStats().missCount());
+        Metrics.counterFunction("cache_evictions_total", "Cache evictions", "cache=\"timeline\"", () -> messages.getTimelineCacheStats().evictionCount());
+        Metrics.gauge("search_index_messages", "Messages in the search index", "", () -> messages.getSearchIndexMessages());
+        Metrics.gauge("search_index_tokens", "Distinct tokens in the search index", "", () -> messages.getSearchIndexTokens());
+        MessageFeed feed = messageService.getFeed();
+        Metrics.gauge("feed_subscribers", "Open live feed connections", "", () -> feed.getSubscriberCount());
+        Metrics.gauge("feed_max_subscribers", "Most live feed connections open at once", "", () -> feed.getMaxSubscribers());
+        Metrics.counterFunction("feed_events_published_total", "Events serialized for the live feed", "", () -> feed.getPublishedCount());
+        Metrics.counterFunction("feed_events_dropped_total", "Events dropped for subscribers with a full buffer", "", () -> feed.getDroppedCount());
+        Metrics.counterFunction("feed_slow_disconnects_total", "Subscribers disconnected because their buffer was full", "", () -> feed.getDisconnectedCount());
+        SessionService sessions = sessionService;
+        Metrics.gauge("sessions_active", "Live session tokens held in memory", "", () -> sessions.getSessionCount());
+        for (RateLimiter limiter : List.of(createMessageLimiter, updateMessageLimiter)) {
+            String labels = "route=\"" + limiter.getRoute() + "\"";
+            Metrics.counterFunction("rate_limit_allowed_total", "Requests let through by the rate limiter", labels, () -> limiter.getAllowedCount());
+            Metrics.counterFunction("rate_limit_rejected_total", "Requests answered 429 by the rate limiter", labels, () -> limiter.getRejectedCount());
+            Metrics.gauge("rate_limit_buckets", "Callers with a live token bucket", labels, () -> limiter.getBucketCount());
+        }
+
+        if (ConcurrencyLimiter.isEnabled()) {
+            ConcurrencyLimiter limiter = concurrencyLimiter;
+            Metrics.gauge("concurrency_limit", "Requests the adaptive limiter currently lets run at once", "", () -> limiter.getLimit());
+            Metrics.gauge("concurrency_in_flight", "Requests running under the adaptive limiter", "", () -> limiter.getInFlight());
+            Metrics.gauge("concurrency_rtt_seconds", "Average request latency seen by the limiter", "window=\"short\"", () -> limiter.getShortRttSeconds());
+            Metrics.gauge("concurrency_rtt_seconds", "Average request latency seen by the limiter", "window=\"long\"", () -> limiter.getLongRttSeconds());
+            for (Priority priority : Priority.values()) {
+                Metrics.counterFunction("concurrency_rejected_total", "Requests refused with 503 by the adaptive limiter",
+                        "priority=\"" + priority.name().toLowerCase() + "\"", () -> limiter.getRejectedCount(priority));
+            }
+        }
+
+        if (BULKHEADS) {
+            for (Bulkhead pool : getBulkheads()) {
+                String labels = "pool=\"" + pool.getName() + "\"";
+                Metrics.gauge("bulkhead_active_threads", "Requests running in each bulkhead", labels, () -> pool.getActiveThreads());
+                Metrics.gauge("bulkhead_max_threads", "Requests each bulkhead runs at once", labels, () -> pool.getMaxThreads());
+                Metrics.gauge("bulkhead_queue_depth", "Requests waiting for a bulkhead slot", labels, () -> pool.getQueueDepth());
+                Metrics.gauge("bulkhead_queue_capacity", "Requests each bulkhead queue can hold", labels, () -> pool.getQueueCapacity());
+                Metrics.counterFunction("bulkhead_rejected_total", "Requests refused with 503 because the bulkhead was full", labels, () -> pool.getRejectedCount());
+                Metrics.counterFunction("bulkhead_completed_total", "Requests run by each bulkhead", labels, () -> pool.getCompletedCount());
+            }
+        }
+
+        if (ConnectionUtil.isReplicaEnabled()) {
+            Metrics.gauge("replica_lag_seconds", "Age of the oldest primary write the read replica does not hold yet", "", ReplicaShipper::getLagSeconds);
+        }
+
+        if (MessageService.isGroupCommitEnabled()) {
+            Metrics.gauge("group_commit_queue_depth", "Messages waiting for the group-commit writer", "", () -> messages.getGroupCommitWriter().getQueueDepth());
+            Metrics.gauge("group_commit_avg_group_size", "Average number of messages per committed group", "", () -> messages.getGroupCommitWriter().getAvgGroupSize());
+            Metrics.counterFunction("group_commit_groups_total", "Groups committed", "", () -> messages.getGroupCommitWriter().getGroupsCommitted());
+            Metrics.counterFunction("group_commit_rejected_total", "Messages rejected because the queue was full", "", () -> messages.getGroupCommitWriter().getRejected());
+        }
+    }
+
+    // Handler for the Prometheus scrape GET /metrics
+
+    private void metricsHandler(Context ctx) {
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8").result(Metrics.scrape());
+    }
+
     /**
      * This is an example handler for an example endpoint.
      * @param context The Javalin Context object manages information about both the HTTP request and response.
@@ -68,10 +286,12 @@ public class SocialMediaController {
                 return;
             }
     
-            ctx.json(accountService.authenticateAccount(newAccount)).status(200); // Send a successful response with the account
+            // The new account is logged in straight away; the response echoes the password as sent, never the stored hash
+            ctx.header(SESSION_HEADER, sessionService.createSession(newAccount.getAccount_id()));
+            ctx.json(new Account(newAccount.getAccount_id(), newAccount.getUsername(), account.getPassword())).status(200);
     
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error"); // Handle exceptions in case of an error
+            serverError(ctx, e);
         }
     }
 
@@ -88,27 +308,39 @@ public class SocialMediaController {
                 return;
             }
     
-            ctx.json(authenticatedAccount).status(200);  // Return the account if authentication is successful
+            ctx.header(SESSION_HEADER, sessionService.createSession(authenticatedAccount.getAccount_id()));
+            ctx.json(new Account(authenticatedAccount.getAccount_id(), authenticatedAccount.getUsername(), account.getPassword())).status(200);  // Return the account if authentication is successful
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error"); // Handle errors
+            serverError(ctx, e);
         }
     }
 
+    // Handler to end a session POST /logout
+
+    private void logoutHandler(Context ctx) {
+        sessionService.invalidate(bearerToken(ctx));
+        ctx.status(200).result("");
+    }
+
     // Handler to create a message POST /messages
 
     private void createNewMessageHandler(Context ctx) {
         try {
             Message message = ctx.bodyAsClass(Message.class);
 
-            if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()) {
+            if (!isValidMessageText(message.getMessage_text())) {
                 ctx.status(400).result("");
                 return;
             }
 
-            if (message.getMessage_text().length() > 255) {
-                ctx.status(400).result("");
+            Integer session = sessionAccountId(ctx);
+            if (session == null || !canPostAs(ctx, session, message.getPosted_by())) {
+                return;
+            }
+
+            if (!withinRateLimit(ctx, createMessageLimiter, message.getPosted_by())) {
                 return;
-            }    
+            }
 
             if (accountService.getAccountById(message.getPosted_by()) == null) {
                 ctx.status(400).result("");
@@ -125,10 +357,77 @@ public class SocialMediaController {
                 ctx.status(400).result("");
                 return;
             }
+            sessionService.recordWrite(bearerToken(ctx));
     
             ctx.json(newMessage).status(200);
+        } catch (RejectedExecutionException e) {
+            ctx.status(503).result(""); // Write queue is full, the client should back off and retry
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error");
+            serverError(ctx, e);
+        }
+    }
+
+    // Handler to create many messages at once POST /messages/batch
+    // Each item is validated like POST /messages; valid items are inserted together and every item gets its own result
+
+    private void createMessageBatchHandler(Context ctx) {
+        try {
+            Message[] messages;
+            try {
+                messages = ctx.bodyAsClass(Message[].class);
+            } catch (Exception e) {
+                messages = null; // Body is not a JSON array of messages
+            }
+            if (messages == null || messages.length > MAX_BATCH_SIZE) {
+                ctx.status(400).result("");
+                return;
+            }
+
+            Integer session = sessionAccountId(ctx);
+            if (session == null) {
+                return;
+            }
+            for (Message message : messages) {
+                if (message != null && !canPostAs(ctx, session, message.getPosted_by())) {
+                    return;
+                }
+            }
+
+            List<Integer> postedBy = new ArrayList<>();
+            for (Message message : messages) {
+                if (message != null) {
+                    postedBy.add(message.getPosted_by());
+                }
+            }
+            Set<Integer> existingAccounts = accountService.getExistingAccountIds(postedBy); // One lookup for every posted_by
+
+            List<Message> validMessages = new ArrayList<>();
+            List<Integer> validIndexes = new ArrayList<>();
+            MessageBatchResult[] results = new MessageBatchResult[messages.length];
+            for (int i = 0; i < messages.length; i++) {
+                Message message = messages[i];
+                if (message == null || !isValidMessageText(message.getMessage_text()) || !existingAccounts.contains(message.getPosted_by())) {
+                    results[i] = new MessageBatchResult(i, 400, null);
+                    continue;
+                }
+                validMessages.add(message);
+                validIndexes.add(i);
+            }
+
+            List<Message> insertedMessages = messageService.addMessages(validMessages);
+            if (insertedMessages == null) {
+                ctx.status(500).result("Internal Server Error"); // The batch was rolled back, nothing was inserted
+                return;
+            }
+            sessionService.recordWrite(bearerToken(ctx));
+            for (int i = 0; i < insertedMessages.size(); i++) {
+                int index = validIndexes.get(i);
+                results[index] = new MessageBatchResult(index, 200, insertedMessages.get(i));
+            }
+
+            ctx.json(results).status(200);
+        } catch (Exception e) {
+            serverError(ctx, e);
         }
     }
 
@@ -136,10 +435,99 @@ public class SocialMediaController {
 
     private void getAllMessagesHandler(Context ctx) {
         try {
-            List<Message> messagesList = messageService.getAllMessages();
+            if (isPageRequest(ctx)) {
+                respondWithPage(ctx, null);
+                return;
+            }
+            if (STREAM_MESSAGES) {
+                ConnectionUtil.readAfter(writesToSee(ctx), () -> { // The replica may serve it if it is fresh enough
+                    streamAllMessages(ctx);
+                    return null;
+                });
+                return;
+            }
+            List<Message> messagesList = ConnectionUtil.readAfter(writesToSee(ctx), messageService::getAllMessages);
             ctx.json(messagesList).status(200);
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error");
+            serverError(ctx, e);
+        }
+    }
+
+    // Handler to search message text GET /messages/search?q=<words and "phrases">&after=<cursor>&limit=N
+    // Results match every word and phrase and are ordered by message_id
+
+    private void searchMessagesHandler(Context ctx) {
+        try {
+            String query = ctx.queryParam("q");
+            String limitParam = ctx.queryParam("limit");
+            int limit = limitParam == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+            if (query == null || query.trim().isEmpty() || limit < 1 || limit > MAX_PAGE_SIZE) {
+                ctx.status(400).result("");
+                return;
+            }
+
+            String after = ctx.queryParam("after");
+            PageCursor cursor = after == null ? PageCursor.start(PageCursor.ORDER_ID) : PageCursor.decode(after);
+            if (cursor.isTimeOrdered()) {
+                ctx.status(400).result(""); // Cursor from a time-ordered listing
+                return;
+            }
+
+            MessagePage page = messageService.searchMessages(query, cursor, limit);
+            if (page == null) {
+                ctx.status(404).result(""); // Search is disabled on this server
+                return;
+            }
+            ctx.json(page).status(200);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result(""); // Bad limit or cursor
+        } catch (Exception e) {
+            serverError(ctx, e);
+        }
+    }
+
+    // Handler for the live feed GET /messages/live?posted_by=N, as server-sent events.
+    // Every write produces one "created", "updated" or "deleted" event whose data is the message JSON.
+    // The request thread stays on the connection draining the subscriber's queue (cheap with -Dserver.virtualThreads);
+    // an idle feed gets a comment every few seconds so closed connections are noticed.
+
+    private void liveFeedHandler(Context ctx) {
+        Integer posted_by;
+        try {
+            posted_by = ctx.queryParam("posted_by") == null ? null : Integer.valueOf(ctx.queryParam("posted_by"));
+        } catch (NumberFormatException e) {
+            ctx.status(400).result("");
+            return;
+        }
+        MessageFeed.Subscription subscription = messageService.getFeed().subscribe(posted_by);
+        if (subscription == null) {
+            ctx.status(503).result(""); // Too many open feeds
+            return;
+        }
+
+        try (subscription) {
+            HttpServletResponse response = ctx.res();
+            response.setStatus(200);
+            response.setContentType("text/event-stream;charset=utf-8");
+            response.setHeader("Cache-Control", "no-cache");
+            OutputStream out = response.getOutputStream();
+            out.write(FEED_COMMENT);
+            out.flush();
+            while (!subscription.isClosed()) {
+                byte[] event = subscription.next(FEED_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                if (event == null) {
+                    out.write(FEED_COMMENT);
+                }
+                while (event != null) { // Write everything already queued, then flush once
+                    out.write(event);
+                    event = subscription.next(0, TimeUnit.SECONDS);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -148,6 +536,9 @@ public class SocialMediaController {
     private void getMessageByIdHandler(Context ctx) {
         try {
             int message_id = Integer.parseInt(ctx.pathParam("message_id"));
+            if (notModified(ctx, messageService.getMessageEtag(message_id))) {
+                return;
+            }
             Message returnedMessage = messageService.getMessageById(message_id);
 
             if (returnedMessage == null) {
@@ -157,7 +548,7 @@ public class SocialMediaController {
 
             ctx.json(returnedMessage).status(200);
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error");
+            serverError(ctx, e);
         }
     }
 
@@ -166,15 +557,23 @@ public class SocialMediaController {
     private void deleteMessageByIdHandler(Context ctx) {
         try {
             int message_id = Integer.parseInt(ctx.pathParam("message_id"));
-            Message returnedMessage = messageService.removeMessageById(message_id);
+            Integer session = sessionAccountId(ctx);
+            if (session == null) {
+                return;
+            }
+            Message returnedMessage = messageService.removeMessageById(message_id, ownerFor(session));
+            if (returnedMessage == null && isSomeoneElses(ctx, message_id, session)) {
+                return;
+            }
     
             if (returnedMessage != null) {  // If the message exists and is deleted, return the deleted message with status 200
+                sessionService.recordWrite(bearerToken(ctx));
                 ctx.json(returnedMessage).status(200);
             } else {
                 ctx.json("").status(200); // If the message doesn't exist, return a 200 response with an empty body
             }
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error");
+            serverError(ctx, e);
         }
     }
 
@@ -183,11 +582,21 @@ public class SocialMediaController {
     private void updateMessageByIdHandler(Context ctx) {
         try {  
             int message_id = Integer.parseInt(ctx.pathParam("message_id")); // Retrieve the message ID from the path
+            if (!withinRateLimit(ctx, updateMessageLimiter, null)) {
+                return;
+            }
+            Integer session = sessionAccountId(ctx);
+            if (session == null) {
+                return;
+            }
             
-            ObjectMapper objectMapper = new ObjectMapper(); // Read the body of the request (the new message)
-            Map<String, Object> requestBody = objectMapper.readValue(ctx.body(), new TypeReference<Map<String, Object>>() {});
-
-            String updatedMessageText = (String) requestBody.get("message_text"); // Extract the new message tex
+            String updatedMessageText;
+            try {
+                updatedMessageText = JsonSupport.readMessageText(ctx.bodyAsBytes()); // Read the new message text from the body
+            } catch (JsonProcessingException e) {
+                ctx.status(400).json(""); // The body is not valid JSON
+                return;
+            }
 
             if (updatedMessageText == null || updatedMessageText.trim().isEmpty()) {
                 ctx.status(400).json(""); // If the text is empty or contains only spaces, return 400
@@ -199,16 +608,20 @@ public class SocialMediaController {
                 return;
             }
             // Attempt to update the message using the modifyMessage function
-            Message updatedMessage = messageService.modifyMessage(message_id, updatedMessageText);
+            Message updatedMessage = messageService.modifyMessage(message_id, ownerFor(session), updatedMessageText);
+            if (updatedMessage == null && isSomeoneElses(ctx, message_id, session)) {
+                return;
+            }
     
             if (updatedMessage == null) {
                 ctx.status(400).json(""); // If the message is not found in the database, return 400
                 return;
             }
+            sessionService.recordWrite(bearerToken(ctx));
 
             ctx.json(updatedMessage).status(200);  // Return the updated message with status 200
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error"); // Handle general errors
+            serverError(ctx, e);
         }
     }
 
@@ -217,10 +630,207 @@ public class SocialMediaController {
     private void getAllMessagesByUserHandler(Context ctx) {
         try {
             int account_id = Integer.parseInt(ctx.pathParam("account_id"));
+            if (isPageRequest(ctx)) {
+                respondWithPage(ctx, account_id);
+                return;
+            }
+            if (notModified(ctx, messageService.getTimelineEtag(account_id))) {
+                return;
+            }
             List<Message> messagesList = messageService.getMessagesByUser(account_id);
             ctx.json(messagesList).status(200);
         } catch (Exception e) {
-            ctx.status(500).result("Internal Server Error");
+            serverError(ctx, e);
+        }
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    // The route class pools of the running app: auth, reads, feed and writes
+    public List<Bulkhead> getBulkheads() {
+        return List.of(authPool, readPool, feedPool, writePool);
+    }
+
+    // Log an unexpected failure and answer 500, or 503 without logging when the database had no connection to give
+    private void serverError(Context ctx, Exception e) {
+        if (e instanceof DataAccessException && ((DataAccessException) e).isTransient()) {
+            ctx.status(503).result(""); // Pool exhausted, the client should back off and retry
+            return;
+        }
+        logger.error("Unhandled error on {} {}", ctx.method(), ctx.path(), e);
+        ctx.status(500).result("Internal Server Error");
+    }
+
+    // Token from "Authorization: Bearer <token>", or null if the request has none
+    private String bearerToken(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return null;
+        }
+        return authorization.substring("Bearer ".length()).trim();
+    }
+
+    // Resolve the caller's session to its account_id from memory, without touching the DB.
+    // Returns ANONYMOUS for a request without a token (unless sessions are required), or responds 401 and returns null.
+    private Integer sessionAccountId(Context ctx) {
+        String token = bearerToken(ctx);
+        if (token == null && !SESSIONS_REQUIRED) {
+            return ANONYMOUS;
+        }
+        Integer account_id = sessionService.getAccountId(token);
+        if (account_id == null) {
+            ctx.status(401).result("");
+        }
+        return account_id;
+    }
+
+    // System.nanoTime() of the newest write a whole-table read must show: the session's own last write
+    // (read-your-writes), or every write made so far, by anyone, for a caller without a session
+    private long writesToSee(Context ctx) {
+        String token = bearerToken(ctx);
+        Long sessionWrite = sessionService.getAccountId(token) == null ? null : sessionService.getLastWrite(token);
+        return sessionWrite != null ? sessionWrite : System.nanoTime();
+    }
+
+    // Take a token from the caller's bucket, before the request reaches the DB; responds 429 with Retry-After otherwise.
+    // The bucket is the session's account, else the posted_by the request names, else the client address.
+    private boolean withinRateLimit(Context ctx, RateLimiter limiter, Integer posted_by) {
+        Integer session = sessionService.getAccountId(bearerToken(ctx));
+        String key = session != null ? "account:" + session : posted_by != null ? "account:" + posted_by : "ip:" + ctx.ip();
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos == 0) {
+            return true;
+        }
+        ctx.header("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        ctx.status(429).result("");
+        return false;
+    }
+
+    // A logged-in caller may only post as itself; responds 403 otherwise
+    private boolean canPostAs(Context ctx, int session, int posted_by) {
+        if (session != ANONYMOUS && session != posted_by) {
+            ctx.status(403).result("");
+            return false;
+        }
+        return true;
+    }
+
+    // A logged-in caller may only change its own messages, so its account goes into the write's where clause
+    private static Integer ownerFor(int session) {
+        return session == ANONYMOUS ? null : session;
+    }
+
+    // After a write limited to the caller's own messages matched nothing, tell a missing message from someone
+    // else's: responds 403 and returns true for the latter. Only this path pays for the extra read.
+    private boolean isSomeoneElses(Context ctx, int message_id, int session) {
+        if (session == ANONYMOUS) {
+            return false;
+        }
+        Message message = messageService.getMessageById(message_id);
+        return message != null && !canPostAs(ctx, session, message.getPosted_by());
+    }
+
+    // Set the ETag and answer 304 with no body if If-None-Match already names it (weak comparison, lists and *).
+    // Called before any DB access, so a matching poll costs neither a query nor serialization.
+    private boolean notModified(Context ctx, String etag) {
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", "no-cache"); // Clients may keep the body but must revalidate
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = etag.substring(2); // Without the W/ prefix
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(opaqueTag)) {
+                ctx.status(304).result("");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Message text must not be blank and must fit in 255 characters
+    private boolean isValidMessageText(String message_text) {
+        return message_text != null && !message_text.trim().isEmpty() && message_text.length() <= 255;
+    }
+
+    // A request is paged when it asks for a cursor or a limit; otherwise the full list is returned as before
+    private boolean isPageRequest(Context ctx) {
+        return ctx.queryParam("after") != null || ctx.queryParam("limit") != null;
+    }
+
+    // Respond with one keyset page (?after=<cursor>&limit=N&order=id|time), or 400 if the parameters are malformed
+    private void respondWithPage(Context ctx, Integer posted_by) {
+        try {
+            String limitParam = ctx.queryParam("limit");
+            int limit = limitParam == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                ctx.status(400).result("");
+                return;
+            }
+
+            String order = ctx.queryParam("order") == null ? PageCursor.ORDER_ID : ctx.queryParam("order");
+            if (!order.equals(PageCursor.ORDER_ID) && !order.equals(PageCursor.ORDER_TIME)) {
+                ctx.status(400).result("");
+                return;
+            }
+
+            String after = ctx.queryParam("after");
+            PageCursor cursor = after == null ? PageCursor.start(order) : PageCursor.decode(after);
+            if (!cursor.getOrder().equals(order) && ctx.queryParam("order") != null) { // Cursor from a differently ordered listing
+                ctx.status(400).result("");
+                return;
+            }
+
+            ctx.json(messageService.getMessagesPage(posted_by, cursor, limit)).status(200);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result(""); // Bad limit or cursor
+        }
+    }
+
+    // Write the JSON array one message at a time as rows come off the cursor, so memory stays flat however big the table is.
+    // If the read fails before anything reached the client, the buffered start of the array is dropped and the failure
+    // thrown, to be answered 500 or 503; once part of the array is out it is left unterminated rather than passed off
+    // as the complete list.
+    private void streamAllMessages(Context ctx) throws IOException {
+        ctx.status(200).contentType("application/json");
+        OutputStream out = ResponseCompression.outputStream(ctx);
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out);
+        boolean discard = false;
+        try {
+            generator.writeStartArray();
+            messageService.streamAllMessages(message -> writeMessage(generator, message));
+            generator.writeEndArray();
+        } catch (DataAccessException e) {
+            if (!ctx.res().isCommitted()) {
+                discard = true;
+                ctx.res().reset(); // Status, headers and buffered bytes
+                throw e;
+            }
+        } finally {
+            if (!discard) {
+                generator.close();
+                out.close();
+            }
+        }
+    }
+
+    private static void writeMessage(JsonGenerator generator, Message message) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("message_id", message.getMessage_id());
+            generator.writeNumberField("posted_by", message.getPosted_by());
+            generator.writeStringField("message_text", message.getMessage_text());
+            generator.writeNumberField("time_posted_epoch", message.getTime_posted_epoch());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Client went away, abort the cursor
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package Controller;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * Wraps a route handler and records its latency into a histogram per response status.
+ * The route's histograms are looked up by status code in an array, so recording neither allocates nor locks
+ * once a status has been seen.
+ */
+public class TimedHandler implements Handler {
+    private final String method;
+    private final String route;
+    private final Handler delegate;
+    private final AtomicReferenceArray<LatencyHistogram> byStatus = new AtomicReferenceArray<>(600);
+
+    public TimedHandler(HandlerType method, String route, Handler delegate) {
+        this.method = method.name();
+        this.route = route;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void handle(Context ctx) throws Exception {
+        long start = System.nanoTime();
+        try {
+            delegate.handle(ctx);
+        } finally {
+            histogram(ctx.statusCode()).recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    private LatencyHistogram histogram(int status) {
+        int index = status >= 0 && status < byStatus.length() ? status : 0;
+        LatencyHistogram histogram = byStatus.get(index);
+        if (histogram == null) { // First response with this status on this route
+            histogram = Metrics.histogram("http_request_duration_seconds", "Latency of HTTP requests by route and status",
+                    "method=\"" + method + "\",route=\"" + route + "\",status=\"" + status + "\"");
+            byStatus.compareAndSet(index, null, histogram);
+        }
+        return histogram;
+    }
+}
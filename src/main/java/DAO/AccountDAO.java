@@ -1,96 +1,168 @@
 package DAO;
 
 import java.sql.*;
+import java.util.*;
 import Model.Account;
 import Util.ConnectionUtil;
-
-public class AccountDAO {
-
+import Util.DaoTimer;
+import Util.DataAccessException;
+
+public class AccountDAO implements AccountRepository {
+    // Latency, row and error metrics for each method, exported by GET /metrics
+    private static final DaoTimer INSERT_ACCOUNT = new DaoTimer("AccountDAO.insertAccount");
+    private static final DaoTimer UPDATE_PASSWORD = new DaoTimer("AccountDAO.updatePassword");
+    private static final DaoTimer GET_ACCOUNT_BY_ID = new DaoTimer("AccountDAO.getAccountById");
+    private static final DaoTimer GET_ACCOUNT_BY_USERNAME = new DaoTimer("AccountDAO.getAccountByUsername");
+    private static final DaoTimer GET_EXISTING_ACCOUNT_IDS = new DaoTimer("AccountDAO.getExistingAccountIds");
+    private static final DaoTimer GET_ALL_ACCOUNTS = new DaoTimer("AccountDAO.getAllAccounts");
+
+    // Inserts the account as given (the service hashes the password first) and returns it with its generated account_id,
+    // or null if it is invalid or the username is taken. Throws DataAccessException if the database fails.
+    @Override
     public Account insertAccount(Account account) {
-        Connection connection = ConnectionUtil.getConnection();
         String username = account.getUsername();
         String password = account.getPassword();
 
-        if (username == null || username.trim().isEmpty() || password.length() < 4) { // Validation: Ensure username is not empty and password length is at least 4 characters
+        if (username == null || username.trim().isEmpty() || password == null || password.length() < 4) { // Validation: Ensure username is not empty and password length is at least 4 characters
             return null;
         }
 
-        try {
-            String sql = "INSERT INTO Account(username, password) VALUES(?, ?);";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        long start = System.nanoTime();
+        Account insertedAccount = null;
+        String sql = "INSERT INTO Account(username, password) VALUES(?, ?);";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             preparedStatement.setString(1, username);
             preparedStatement.setString(2, password);
 
             preparedStatement.executeUpdate();
-            return account;
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    insertedAccount = new Account(generatedKeys.getInt(1), username, password);
+                }
+            }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            if (!DataAccessException.isConstraintViolation(e)) {
+                throw INSERT_ACCOUNT.error(e);
+            }
+            // The username was taken meanwhile; insertedAccount stays null
         }
 
-        return null;
+        INSERT_ACCOUNT.record(start, insertedAccount == null ? 0 : 1);
+        return insertedAccount;
     }
 
-    public Account getAccountByCredentials(Account account) {
-        Connection connection = ConnectionUtil.getConnection();
-        String username = account.getUsername();
-        String password = account.getPassword();
+    // Replaces the stored password hash, used when a login upgrades a plain or cheaper hash
+    @Override
+    public boolean updatePassword(int account_id, String password) {
+        long start = System.nanoTime();
+        int rowsAffected = 0;
+        String sql = "UPDATE Account SET password = ? WHERE account_id = ?;";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setString(1, password);
+            preparedStatement.setInt(2, account_id);
+
+            rowsAffected = preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw UPDATE_PASSWORD.error(e);
+        }
 
-        // Validation: Ensure username and password are not empty
-        if (username == null || username.trim().isEmpty() || password == null || password.trim().isEmpty())
-            return null;
+        UPDATE_PASSWORD.record(start, rowsAffected);
+        return rowsAffected > 0;
+    }
+
+    @Override
+    public Account getAccountById(int account_id) {
+        long start = System.nanoTime();
+        Account account = null;
+        String sql = "SELECT * FROM Account WHERE account_id = ?;";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, account_id);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    account = new Account(resultSet.getInt("account_id"), resultSet.getString("username"), resultSet.getString("password"));
+                }
+            }
+        } catch (SQLException e) {
+            throw GET_ACCOUNT_BY_ID.error(e); // Count and log the error if SQL query fails, and report it to the caller
+        }
 
-        try {
-            String sql = "SELECT * FROM Account WHERE username = ? AND password = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        GET_ACCOUNT_BY_ID.record(start, account == null ? 0 : 1);
+        return account;
+    }
+
+    @Override
+    public Account getAccountByUsername(String username) {
+        long start = System.nanoTime();
+        Account account = null;
+        String sql = "SELECT * FROM Account WHERE username = ?;";  //to select account by username
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setString(1, username);
-            preparedStatement.setString(2, password);
 
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                return new Account(resultSet.getInt("account_id"), resultSet.getString("username"), resultSet.getString("password"));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) { // Execute the query and check if account exists
+                if (resultSet.next()) {
+                    account = new Account(resultSet.getInt("account_id"), resultSet.getString("username"), resultSet.getString("password")); // Create the Account object if found
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw GET_ACCOUNT_BY_USERNAME.error(e); // Count and log the error if SQL query fails, and report it to the caller
         }
 
-        return null;
+        GET_ACCOUNT_BY_USERNAME.record(start, account == null ? 0 : 1);
+        return account; // Null if account not found
     }
 
-    public Account getAccountById(int account_id) {
-        Connection connection = ConnectionUtil.getConnection();
+    // Returns which of the given account ids exist, in a single IN (...) query
+    @Override
+    public Set<Integer> getExistingAccountIds(Collection<Integer> account_ids) {
+        Set<Integer> existing = new HashSet<>();
+        if (account_ids.isEmpty()) {
+            return existing;
+        }
 
-        try {
-            String sql = "SELECT * FROM Account WHERE account_id = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setInt(1, account_id);
-            ResultSet resultSet = preparedStatement.executeQuery();
+        long start = System.nanoTime();
+        String placeholders = String.join(", ", Collections.nCopies(account_ids.size(), "?"));
+        String sql = "SELECT account_id FROM Account WHERE account_id IN (" + placeholders + ");";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (int account_id : account_ids) {
+                preparedStatement.setInt(index++, account_id);
+            }
 
-            if (resultSet.next()) {
-                return new Account(resultSet.getInt("account_id"), resultSet.getString("username"), resultSet.getString("password"));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    existing.add(resultSet.getInt("account_id"));
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage()); // Print error message if SQL query fails
+            throw GET_EXISTING_ACCOUNT_IDS.error(e);
         }
 
-        return null;
+        GET_EXISTING_ACCOUNT_IDS.record(start, existing.size());
+        return existing;
     }
 
-    public Account getAccountByUsername(String username) {
-        Connection connection = ConnectionUtil.getConnection();
-    
-        try {
-            String sql = "SELECT * FROM Account WHERE username = ?;";  //to select account by username
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, username);
-    
-            ResultSet resultSet = preparedStatement.executeQuery(); // Execute the query and check if account exists
-            if (resultSet.next()) {
-                return new Account(resultSet.getInt("account_id"), resultSet.getString("username"), resultSet.getString("password")); // Create and return Account object if found
+    // Every account, used to load the in-memory engine at startup
+    public List<Account> getAllAccounts() {
+        long start = System.nanoTime();
+        List<Account> accounts = new ArrayList<>();
+        String sql = "SELECT * FROM Account;";
+        try (Connection connection = ConnectionUtil.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                accounts.add(new Account(resultSet.getInt("account_id"), resultSet.getString("username"), resultSet.getString("password")));
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage()); // Print error message if SQL query fails
+            throw GET_ALL_ACCOUNTS.error(e);
         }
-    
-        return null; // Return null if account not found
+
+        GET_ALL_ACCOUNTS.record(start, accounts.size());
+        return accounts;
     }
-}
\ No newline at end of file
+}
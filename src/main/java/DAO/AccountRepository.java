@@ -0,0 +1,24 @@
+package DAO;
+
+import java.util.Collection;
+import java.util.Set;
+import Model.Account;
+
+/**
+ * Storage for accounts. AccountDAO keeps them in h2; InMemoryAccountRepository keeps them in concurrent maps.
+ * Passwords arrive already hashed; invalid input and missing rows give null or false, and a storage failure
+ * throws Util.DataAccessException.
+ */
+public interface AccountRepository {
+    // Returns the stored account with its generated account_id, or null if it is invalid or the username is taken
+    Account insertAccount(Account account);
+
+    boolean updatePassword(int account_id, String password);
+
+    Account getAccountById(int account_id);
+
+    Account getAccountByUsername(String username);
+
+    // Which of the given account ids exist
+    Set<Integer> getExistingAccountIds(Collection<Integer> account_ids);
+}
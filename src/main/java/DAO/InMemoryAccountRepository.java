@@ -0,0 +1,73 @@
+package DAO;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import Model.Account;
+
+/**
+ * Accounts held in concurrent maps by account_id and by username, with an atomic id sequence.
+ * Stored accounts are never modified in place (a password change stores a new object), so callers may keep them
+ * but must not change them.
+ */
+public class InMemoryAccountRepository implements AccountRepository {
+    private final ConcurrentMap<Integer, Account> accountsById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Account> accountsByUsername = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Override
+    public Account insertAccount(Account account) {
+        String username = account.getUsername();
+        String password = account.getPassword();
+
+        if (username == null || username.trim().isEmpty() || password == null || password.length() < 4) { // Same validation as AccountDAO
+            return null;
+        }
+
+        Account insertedAccount = new Account(sequence.incrementAndGet(), username, password);
+        if (accountsByUsername.putIfAbsent(username, insertedAccount) != null) {
+            return null; // Username taken; like an h2 auto-increment, the id is not reused
+        }
+        accountsById.put(insertedAccount.getAccount_id(), insertedAccount);
+        return insertedAccount;
+    }
+
+    // Method to copy an existing account, keeping its id; used when loading from h2
+    public void load(Account account) {
+        accountsByUsername.put(account.getUsername(), account);
+        accountsById.put(account.getAccount_id(), account);
+        sequence.accumulateAndGet(account.getAccount_id(), Math::max);
+    }
+
+    @Override
+    public boolean updatePassword(int account_id, String password) {
+        Account updatedAccount = accountsById.computeIfPresent(account_id, (id, account) -> new Account(id, account.getUsername(), password));
+        if (updatedAccount == null) {
+            return false;
+        }
+        accountsByUsername.put(updatedAccount.getUsername(), updatedAccount);
+        return true;
+    }
+
+    @Override
+    public Account getAccountById(int account_id) {
+        return accountsById.get(account_id);
+    }
+
+    @Override
+    public Account getAccountByUsername(String username) {
+        return username == null ? null : accountsByUsername.get(username);
+    }
+
+    @Override
+    public Set<Integer> getExistingAccountIds(Collection<Integer> account_ids) {
+        Set<Integer> existing = new HashSet<>();
+        for (int account_id : account_ids) {
+            if (accountsById.containsKey(account_id)) {
+                existing.add(account_id);
+            }
+        }
+        return existing;
+    }
+}
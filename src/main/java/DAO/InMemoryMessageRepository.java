@@ -0,0 +1,244 @@
+package DAO;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import Model.Message;
+
+/**
+ * Messages held in lock-free concurrent structures:
+ * a sorted map by message_id (the primary index), a sorted set of message_ids per posted_by, and a sorted set of
+ * (time_posted_epoch, message_id) keys for time-ordered pages. Reads and updates take no lock; an insert takes its id
+ * and publishes the message in every index under one lock, so ids become visible in order and an id-ordered page
+ * never passes a lower id that is still being stored.
+ *
+ * The primary index is the source of truth. A write goes to it first and to the secondary indexes after, and
+ * readers of the secondary indexes look each id up in the primary index, so they never return a deleted message
+ * or an old version of an updated one. Stored messages are never modified in place; an update stores a new object.
+ */
+public class InMemoryMessageRepository implements MessageRepository {
+    private final AccountRepository accounts;
+    private final ConcurrentSkipListMap<Integer, Message> messagesById = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Integer, ConcurrentSkipListSet<Integer>> messageIdsByUser = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<TimeKey> messagesByTime = new ConcurrentSkipListSet<>();
+    private final Object inserts = new Object();
+    // The last id handed out, guarded by inserts
+    private int lastMessageId;
+
+    // posted_by is checked against accounts, as h2 does with its foreign key
+    public InMemoryMessageRepository(AccountRepository accounts) {
+        this.accounts = accounts;
+    }
+
+    @Override
+    public Message addMessage(String message_text, int account_id, long time_posted_epoch) {
+        if (!isValidText(message_text) || accounts.getAccountById(account_id) == null)
+            return null;
+
+        synchronized (inserts) {
+            return store(new Message(++lastMessageId, account_id, message_text, time_posted_epoch));
+        }
+    }
+
+    // Validates every message first, so either all are stored or none is
+    @Override
+    public List<Message> addMessages(List<Message> messages) {
+        Set<Integer> posters = new HashSet<>();
+        for (Message message : messages) {
+            if (!isValidText(message.getMessage_text())) {
+                return null;
+            }
+            posters.add(message.getPosted_by());
+        }
+        if (accounts.getExistingAccountIds(posters).size() != posters.size()) {
+            return null;
+        }
+
+        List<Message> insertedMessages = new ArrayList<>(messages.size());
+        synchronized (inserts) {
+            for (Message message : messages) {
+                insertedMessages.add(store(new Message(++lastMessageId, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch())));
+            }
+        }
+        return insertedMessages;
+    }
+
+    // Method to copy an existing message, keeping its id; used when loading from h2
+    public void load(Message message) {
+        synchronized (inserts) {
+            store(message);
+            lastMessageId = Math.max(lastMessageId, message.getMessage_id());
+        }
+    }
+
+    private Message store(Message message) {
+        messagesById.put(message.getMessage_id(), message);
+        messageIdsByUser.computeIfAbsent(message.getPosted_by(), id -> new ConcurrentSkipListSet<>()).add(message.getMessage_id());
+        messagesByTime.add(new TimeKey(message.getTime_posted_epoch(), message.getMessage_id()));
+        return message;
+    }
+
+    @Override
+    public List<Message> getAllMessages() {
+        return new ArrayList<>(messagesById.values());
+    }
+
+    @Override
+    public void streamAllMessages(Consumer<Message> consumer) {
+        for (Message message : messagesById.values()) {
+            consumer.accept(message);
+        }
+    }
+
+    @Override
+    public Message getMessageById(int message_id) {
+        return messagesById.get(message_id);
+    }
+
+    @Override
+    public List<Message> getMessagesByIds(int[] message_ids) {
+        List<Message> messageList = new ArrayList<>(message_ids.length);
+        for (int message_id : message_ids) {
+            Message message = messagesById.get(message_id);
+            if (message != null) {
+                messageList.add(message);
+            }
+        }
+        return messageList;
+    }
+
+    // Removes only the version whose owner was checked; retried if an update replaced it in between
+    @Override
+    public Message removeMessageById(int message_id, Integer posted_by) {
+        Message deletedMessage;
+        do {
+            deletedMessage = messagesById.get(message_id);
+            if (deletedMessage == null || (posted_by != null && deletedMessage.getPosted_by() != posted_by)) {
+                return null;
+            }
+        } while (!messagesById.remove(message_id, deletedMessage));
+
+        Set<Integer> userIds = messageIdsByUser.get(deletedMessage.getPosted_by());
+        if (userIds != null) {
+            userIds.remove(message_id);
+        }
+        messagesByTime.remove(new TimeKey(deletedMessage.getTime_posted_epoch(), message_id));
+        return deletedMessage;
+    }
+
+    // Compare-and-set on the primary index: retried if another update got in between, gives up if the message is gone
+    // or not posted_by's. Only the text changes, so the secondary indexes stay as they are.
+    @Override
+    public Message modifyMessage(int message_id, Integer posted_by, String newMessage) {
+        if (!isValidText(newMessage))
+            return null;
+
+        while (true) {
+            Message current = messagesById.get(message_id);
+            if (current == null || (posted_by != null && current.getPosted_by() != posted_by)) {
+                return null;
+            }
+            Message updatedMessage = new Message(message_id, current.getPosted_by(), newMessage, current.getTime_posted_epoch());
+            if (messagesById.replace(message_id, current, updatedMessage)) {
+                return updatedMessage;
+            }
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesByUser(int account_id) {
+        Set<Integer> userIds = messageIdsByUser.get(account_id);
+        return userIds == null ? new ArrayList<>() : resolve(userIds, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesPage(Integer posted_by, boolean byTime, long after_time, int after_id, int limit) {
+        if (posted_by == null) {
+            if (!byTime) {
+                return resolve(messagesById.tailMap(after_id, false).keySet(), limit);
+            }
+            List<Message> messageList = new ArrayList<>();
+            for (TimeKey key : messagesByTime.tailSet(new TimeKey(after_time, after_id), false)) {
+                if (messageList.size() == limit) {
+                    break;
+                }
+                Message message = messagesById.get(key.message_id);
+                if (message != null) {
+                    messageList.add(message);
+                }
+            }
+            return messageList;
+        }
+
+        ConcurrentSkipListSet<Integer> userIds = messageIdsByUser.get(posted_by);
+        if (userIds == null) {
+            return new ArrayList<>();
+        }
+        if (!byTime) {
+            return resolve(userIds.tailSet(after_id, false), limit);
+        }
+        // One user's messages are few next to the whole table: sort them by time rather than keep another index
+        List<Message> messageList = new ArrayList<>();
+        for (Message message : resolve(userIds, Integer.MAX_VALUE)) {
+            long time = message.getTime_posted_epoch();
+            if (time > after_time || (time == after_time && message.getMessage_id() > after_id)) {
+                messageList.add(message);
+            }
+        }
+        messageList.sort(Comparator.comparingLong(Message::getTime_posted_epoch).thenComparingInt(Message::getMessage_id));
+        return messageList.size() > limit ? new ArrayList<>(messageList.subList(0, limit)) : messageList;
+    }
+
+    public int getMessageCount() {
+        return messagesById.size();
+    }
+
+    // Look ids up in the primary index, skipping any deleted since the secondary index was read
+    private List<Message> resolve(Collection<Integer> message_ids, int limit) {
+        List<Message> messageList = new ArrayList<>();
+        for (int message_id : message_ids) {
+            if (messageList.size() == limit) {
+                break;
+            }
+            Message message = messagesById.get(message_id);
+            if (message != null) {
+                messageList.add(message);
+            }
+        }
+        return messageList;
+    }
+
+    private static boolean isValidText(String message_text) {
+        return message_text != null && !message_text.trim().isEmpty() && message_text.length() <= 255;
+    }
+
+    private static class TimeKey implements Comparable<TimeKey> {
+        final long time_posted_epoch;
+        final int message_id;
+
+        TimeKey(long time_posted_epoch, int message_id) {
+            this.time_posted_epoch = time_posted_epoch;
+            this.message_id = message_id;
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Long.compare(time_posted_epoch, other.time_posted_epoch);
+            return byTime != 0 ? byTime : Integer.compare(message_id, other.message_id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TimeKey && compareTo((TimeKey) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(time_posted_epoch) * 31 + message_id;
+        }
+    }
+}
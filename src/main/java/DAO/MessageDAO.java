@@ -2,167 +2,518 @@ package DAO;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import Model.Message;
-import Service.AccountService;
-import Util.ConnectionUtil;
-
-public class MessageDAO {
-
+import Util.DaoTimer;
+import Util.DataAccessException;
+import Util.ShardRouter;
+
+// Messages are partitioned across ShardRouter's databases by posted_by. Writes and timeline reads go to the
+// poster's shard; reads by message_id and whole-table reads ask every shard in parallel and merge the answers.
+// With several shards the message ids come from ShardRouter rather than from each shard's identity column.
+// getAllMessages, streamAllMessages, getMessageById and getMessagesByUser read through getReadConnection, so
+// with a read replica they are served by it when the caller's ConnectionUtil.readAfter call allows.
+// With the default single shard every method runs one statement on the calling thread, as before.
+// Null and empty results mean nothing matched (or, for writes, the input was invalid); a database failure is
+// thrown as DataAccessException.
+public class MessageDAO implements MessageRepository {
+    // Rows pulled per round trip when streaming, overridable with -Dmessages.fetchSize
+    private static final int STREAM_FETCH_SIZE = Integer.getInteger("messages.fetchSize", 500);
+
+    // Runs the per-shard statements of a scatter-gather read; they mostly wait on h2, so one virtual thread each
+    private static final ExecutorService SHARD_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Latency, row and error metrics for each method, exported by GET /metrics
+    private static final DaoTimer ADD_MESSAGE = new DaoTimer("MessageDAO.addMessage");
+    private static final DaoTimer ADD_MESSAGES = new DaoTimer("MessageDAO.addMessages");
+    private static final DaoTimer GET_ALL_MESSAGES = new DaoTimer("MessageDAO.getAllMessages");
+    private static final DaoTimer STREAM_ALL_MESSAGES = new DaoTimer("MessageDAO.streamAllMessages");
+    private static final DaoTimer GET_MESSAGE_BY_ID = new DaoTimer("MessageDAO.getMessageById");
+    private static final DaoTimer GET_MESSAGES_BY_IDS = new DaoTimer("MessageDAO.getMessagesByIds");
+    private static final DaoTimer REMOVE_MESSAGE_BY_ID = new DaoTimer("MessageDAO.removeMessageById");
+    private static final DaoTimer MODIFY_MESSAGE = new DaoTimer("MessageDAO.modifyMessage");
+    private static final DaoTimer GET_MESSAGES_BY_USER = new DaoTimer("MessageDAO.getMessagesByUser");
+    private static final DaoTimer GET_MESSAGES_PAGE = new DaoTimer("MessageDAO.getMessagesPage");
+
+    @Override
     public Message addMessage(String message_text, int account_id, long time_posted_epoch) {
-        Connection connection = ConnectionUtil.getConnection();
-        AccountService accountService = new AccountService();
         int posted_by = account_id;
 
         if (message_text == null || message_text.trim().isEmpty() || message_text.length() > 255)
             return null;
 
-        if (accountService.getAccountById(account_id) == null)
-            return null;
-
-        try {
-            String sql = "INSERT INTO Message(posted_by, message_text, time_posted_epoch) VALUES(?, ?, ?);";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        // posted_by is checked against the cached accounts by the caller; on shard 0 the foreign key still rejects unknown accounts
+        long start = System.nanoTime();
+        Message newMessage = null;
+        boolean sharded = ShardRouter.getShardCount() > 1;
+        String sql = sharded
+                ? "INSERT INTO Message(posted_by, message_text, time_posted_epoch, message_id) VALUES(?, ?, ?, ?);"
+                : "INSERT INTO Message(posted_by, message_text, time_posted_epoch) VALUES(?, ?, ?);";
+        int reservedId = 0;
+        try (Connection connection = ShardRouter.getConnection(ShardRouter.shardFor(posted_by));
+             PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             preparedStatement.setInt(1, posted_by);
             preparedStatement.setString(2, message_text);
             preparedStatement.setLong(3, time_posted_epoch);
+            if (sharded) {
+                reservedId = ShardRouter.allocateMessageIds(1);
+                preparedStatement.setInt(4, reservedId);
+            }
 
             int rowsAffected = preparedStatement.executeUpdate();
             if (rowsAffected > 0) {
-                int newMessageId = getMessageId(message_text);
-                return new Message(newMessageId, posted_by, message_text, time_posted_epoch);
+                try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) { // The new message_id, read back on the same statement
+                    if (generatedKeys.next()) {
+                        newMessage = new Message(generatedKeys.getInt(1), posted_by, message_text, time_posted_epoch);
+                    }
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            if (!DataAccessException.isConstraintViolation(e)) {
+                throw ADD_MESSAGE.error(e);
+            }
+            // posted_by does not exist; newMessage stays null
+        } finally {
+            if (reservedId > 0) {
+                ShardRouter.releaseMessageIds(reservedId); // Committed (auto-commit) or failed by now
+            }
         }
 
-        return null;
+        ADD_MESSAGE.record(start, newMessage == null ? 0 : 1);
+        return newMessage;
     }
 
-    public int getMessageId(String message_text) {
-        Connection connection = ConnectionUtil.getConnection();
-
-        if (message_text == null || message_text.trim().isEmpty())
-            return 0;
+    // Inserts all messages with one JDBC batch per shard, each inside its own transaction; the transactions are
+    // committed only once every shard has taken its batch, and all are rolled back if any of them fails.
+    // Returns the messages with their generated ids in input order, or null if a message broke a constraint
+    // (eg an unknown posted_by) and the batch was rolled back. Any other failure is rolled back and thrown.
+    @Override
+    public List<Message> addMessages(List<Message> messages) {
+        long start = System.nanoTime();
+        List<Message> insertedMessages = null;
+        Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            positionsByShard.computeIfAbsent(ShardRouter.shardFor(messages.get(i).getPosted_by()), shard -> new ArrayList<>()).add(i);
+        }
 
+        List<Connection> connections = new ArrayList<>();
+        int firstId = 0;
         try {
-            String sql = "SELECT message_id FROM message WHERE message_text = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, message_text);
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            if (resultSet.next()) { // If message is found, create and return a Message object
-                return resultSet.getInt("message_id");
+            // With several shards the ids are reserved up front, in input order
+            firstId = ShardRouter.getShardCount() > 1 ? ShardRouter.allocateMessageIds(messages.size()) : 0;
+            Message[] batch = new Message[messages.size()];
+            for (Map.Entry<Integer, List<Integer>> entry : positionsByShard.entrySet()) {
+                Connection connection = ShardRouter.getConnection(entry.getKey());
+                connections.add(connection);
+                connection.setAutoCommit(false);
+                insertBatch(connection, messages, entry.getValue(), firstId, batch);
             }
+            for (Connection connection : connections) {
+                connection.commit();
+            }
+            insertedMessages = new ArrayList<>(Arrays.asList(batch));
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            for (Connection connection : connections) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackError) {
+                    ADD_MESSAGES.error(rollbackError);
+                }
+            }
+            if (!DataAccessException.isConstraintViolation(e)) {
+                throw ADD_MESSAGES.error(e);
+            }
+        } finally {
+            for (Connection connection : connections) {
+                try (Connection closing = connection) {
+                    closing.setAutoCommit(true); // The connection goes back to the pool, restore the default
+                } catch (SQLException e) {
+                    ADD_MESSAGES.error(e);
+                }
+            }
+            if (firstId > 0) {
+                ShardRouter.releaseMessageIds(firstId); // Committed or rolled back on every shard by now
+            }
         }
 
-        return 0;
+        ADD_MESSAGES.record(start, insertedMessages == null ? 0 : insertedMessages.size());
+        return insertedMessages;
     }
 
+    // Insert the messages at the given positions on one shard, storing each with its id at the same position of batch.
+    // The ids are generated by h2 when firstId is 0, otherwise message i gets firstId + i.
+    private void insertBatch(Connection connection, List<Message> messages, List<Integer> positions, int firstId, Message[] batch) throws SQLException {
+        String sql = firstId > 0
+                ? "INSERT INTO Message(posted_by, message_text, time_posted_epoch, message_id) VALUES(?, ?, ?, ?);"
+                : "INSERT INTO Message(posted_by, message_text, time_posted_epoch) VALUES(?, ?, ?);";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int position : positions) {
+                Message message = messages.get(position);
+                preparedStatement.setInt(1, message.getPosted_by());
+                preparedStatement.setString(2, message.getMessage_text());
+                preparedStatement.setLong(3, message.getTime_posted_epoch());
+                if (firstId > 0) {
+                    preparedStatement.setInt(4, firstId + position);
+                }
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+
+            try (ResultSet generatedKeys = preparedStatement.getGeneratedKeys()) {
+                for (int position : positions) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException("Missing generated key for batch insert");
+                    }
+                    Message message = messages.get(position);
+                    batch[position] = new Message(generatedKeys.getInt(1), message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+                }
+            }
+        }
+    }
+
+    @Override
     public List<Message> getAllMessages() {
-        Connection connection = ConnectionUtil.getConnection();
+        long start = System.nanoTime();
         List<Message> messageList = new ArrayList<>();
 
+        String sql = "SELECT * FROM message;";
         try {
-            String sql = "SELECT * FROM message;";
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(sql);
-
-            while (resultSet.next()) {
-                int message_id = resultSet.getInt("message_id");
-                String message_text = resultSet.getString("message_text");
-                int posted_by = resultSet.getInt("posted_by");
-                long time_posted_epoch = resultSet.getLong("time_posted_epoch");
-                messageList.add(new Message(message_id, posted_by, message_text, time_posted_epoch));
+            for (List<Message> shardMessages : scatter(shard -> {
+                List<Message> shardList = new ArrayList<>();
+                try (Connection connection = ShardRouter.getReadConnection(shard);
+                     Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(sql)) {
+
+                    while (resultSet.next()) {
+                        int message_id = resultSet.getInt("message_id");
+                        String message_text = resultSet.getString("message_text");
+                        int posted_by = resultSet.getInt("posted_by");
+                        long time_posted_epoch = resultSet.getLong("time_posted_epoch");
+                        shardList.add(new Message(message_id, posted_by, message_text, time_posted_epoch));
+                    }
+                }
+                return shardList;
+            })) {
+                messageList.addAll(shardMessages);
+            }
+            if (ShardRouter.getShardCount() > 1) {
+                messageList.sort(Comparator.comparingInt(Message::getMessage_id)); // One table's order, whatever the shard count
             }
-
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw GET_ALL_MESSAGES.error(e);
         }
 
+        GET_ALL_MESSAGES.record(start, messageList.size());
         return messageList;
     }
 
-    public Message getMessageById(int message_id) {
-        Connection connection = ConnectionUtil.getConnection();
-
+    // Streams every message to the consumer from a forward-only cursor instead of building a list.
+    // Lazy query execution is switched on for the borrowed connection so h2 does not materialize the result.
+    // Shards are streamed one after the other, on the calling thread, so the consumer needs no locking.
+    // Throws DataAccessException if the query fails, possibly after some messages were handed over.
+    @Override
+    public void streamAllMessages(Consumer<Message> consumer) {
+        long start = System.nanoTime();
+        int rows = 0;
+        String sql = "SELECT * FROM message;";
         try {
-            String sql = "SELECT * FROM message WHERE message_id = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setInt(1, message_id);
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            if (resultSet.next()) {
-                return new Message(message_id, resultSet.getInt("posted_by"), resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch"));
+            for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+                try (Connection connection = ShardRouter.getReadConnection(shard)) {
+                    setLazyQueryExecution(connection, true);
+                    try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                        statement.setFetchSize(STREAM_FETCH_SIZE);
+                        try (ResultSet resultSet = statement.executeQuery(sql)) {
+                            while (resultSet.next()) {
+                                consumer.accept(new Message(resultSet.getInt("message_id"), resultSet.getInt("posted_by"), resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch")));
+                                rows++;
+                            }
+                        }
+                    } finally {
+                        setLazyQueryExecution(connection, false); // The connection goes back to the pool, restore the default
+                    }
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw STREAM_ALL_MESSAGES.error(e);
         }
 
-        return null;
+        STREAM_ALL_MESSAGES.record(start, rows);
     }
 
-    public Message removeMessageById(int message_id) {
-        Connection connection = ConnectionUtil.getConnection();
-        Message returnedMessage = getMessageById(message_id);
+    private void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+        }
+    }
 
+    // The id does not say which shard holds the message, so every shard is asked
+    @Override
+    public Message getMessageById(int message_id) {
+        long start = System.nanoTime();
+        Message message = null;
+        String sql = "SELECT * FROM message WHERE message_id = ?;";
         try {
-            String sql = "DELETE FROM message WHERE message_id = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setInt(1, message_id);
-            preparedStatement.executeUpdate();
+            message = first(scatter(shard -> querySingle(ShardRouter.getReadConnection(shard), sql, preparedStatement -> preparedStatement.setInt(1, message_id))));
+        } catch (SQLException e) {
+            throw GET_MESSAGE_BY_ID.error(e);
+        }
 
-            return returnedMessage;
+        GET_MESSAGE_BY_ID.record(start, message == null ? 0 : 1);
+        return message;
+    }
+
+    // One statement per shard for the whole set, as the ids do not say which shard holds each message.
+    // Always reads the primary: SearchIndex checks these rows against its postings and needs every committed write.
+    @Override
+    public List<Message> getMessagesByIds(int[] message_ids) {
+        long start = System.nanoTime();
+        List<Message> messageList = new ArrayList<>(message_ids.length);
+        if (message_ids.length == 0) {
+            return messageList;
+        }
+
+        String sql = "SELECT * FROM message WHERE message_id = ANY(?);";
+        Integer[] ids = Arrays.stream(message_ids).boxed().toArray(Integer[]::new);
+        try {
+            for (List<Message> shardMessages : scatter(shard -> {
+                List<Message> shardList = new ArrayList<>();
+                try (Connection connection = ShardRouter.getConnection(shard);
+                     PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                    preparedStatement.setObject(1, ids);
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            shardList.add(new Message(resultSet.getInt("message_id"), resultSet.getInt("posted_by"), resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch")));
+                        }
+                    }
+                }
+                return shardList;
+            })) {
+                messageList.addAll(shardMessages);
+            }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw GET_MESSAGES_BY_IDS.error(e);
         }
 
-        return null;
+        GET_MESSAGES_BY_IDS.record(start, messageList.size());
+        return messageList;
     }
 
-    public Message modifyMessage(int message_id, String newMessage) {
-        Connection connection = ConnectionUtil.getConnection();
+    // Deletes the message and returns the deleted row in one statement, using h2's OLD TABLE delta table.
+    // With an owner the delete also requires posted_by to match and goes straight to the owner's shard;
+    // without one it is sent to every shard and only the one holding the message deletes anything.
+    @Override
+    public Message removeMessageById(int message_id, Integer posted_by) {
+        long start = System.nanoTime();
+        Message deletedMessage = null;
+        try {
+            if (posted_by == null) {
+                String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?);";
+                deletedMessage = first(scatter(shard -> querySingle(ShardRouter.getConnection(shard), sql, preparedStatement -> preparedStatement.setInt(1, message_id))));
+            } else {
+                String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ? AND posted_by = ?);";
+                deletedMessage = querySingle(ShardRouter.getConnection(ShardRouter.shardFor(posted_by)), sql, preparedStatement -> {
+                    preparedStatement.setInt(1, message_id);
+                    preparedStatement.setInt(2, posted_by);
+                });
+            }
+        } catch (SQLException e) {
+            throw REMOVE_MESSAGE_BY_ID.error(e);
+        }
+
+        REMOVE_MESSAGE_BY_ID.record(start, deletedMessage == null ? 0 : 1);
+        return deletedMessage;
+    }
 
+    // Updates the text and returns the updated row in one statement, using h2's FINAL TABLE delta table.
+    // Routed like removeMessageById: to the owner's shard with an owner, otherwise to every shard.
+    @Override
+    public Message modifyMessage(int message_id, Integer posted_by, String newMessage) {
         if (newMessage == null || newMessage.trim().isEmpty() || newMessage.length() > 255) // Validation: Ensure new message is not empty or too long
             return null;
 
+        long start = System.nanoTime();
+        Message updatedMessage = null;
         try {
-            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1, newMessage);
-            preparedStatement.setInt(2, message_id);
-            int rowsAffected = preparedStatement.executeUpdate();
-
-            if (rowsAffected < 1) {
-                return null;
+            if (posted_by == null) {
+                String sql = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ?);";
+                updatedMessage = first(scatter(shard -> querySingle(ShardRouter.getConnection(shard), sql, preparedStatement -> {
+                    preparedStatement.setString(1, newMessage);
+                    preparedStatement.setInt(2, message_id);
+                })));
+            } else {
+                String sql = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ? AND posted_by = ?);";
+                updatedMessage = querySingle(ShardRouter.getConnection(ShardRouter.shardFor(posted_by)), sql, preparedStatement -> {
+                    preparedStatement.setString(1, newMessage);
+                    preparedStatement.setInt(2, message_id);
+                    preparedStatement.setInt(3, posted_by);
+                });
             }
-
-            return getMessageById(message_id);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw MODIFY_MESSAGE.error(e);
         }
 
-        return null;
+        MODIFY_MESSAGE.record(start, updatedMessage == null ? 0 : 1);
+        return updatedMessage;
     }
 
+    // A user's messages all live on one shard
+    @Override
     public List<Message> getMessagesByUser(int account_id) {
-        Connection connection = ConnectionUtil.getConnection();
+        long start = System.nanoTime();
         List<Message> messageList = new ArrayList<>();
 
-        try {
-            String sql = "SELECT * FROM message WHERE posted_by = ?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        String sql = "SELECT * FROM message WHERE posted_by = ?;";
+        try (Connection connection = ShardRouter.getReadConnection(ShardRouter.shardFor(account_id));
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             preparedStatement.setInt(1, account_id);
-            ResultSet resultSet = preparedStatement.executeQuery();
 
-            while (resultSet.next()) { // Iterate through the result set and add each message to the list
-                messageList.add(new Message(resultSet.getInt("message_id"), resultSet.getInt("posted_by"), resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch")));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) { // Iterate through the result set and add each message to the list
+                    messageList.add(new Message(resultSet.getInt("message_id"), resultSet.getInt("posted_by"), resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch")));
+                }
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw GET_MESSAGES_BY_USER.error(e);
         }
 
+        GET_MESSAGES_BY_USER.record(start, messageList.size());
         return messageList;
     }
-}
\ No newline at end of file
+
+    // Keyset pagination: returns up to limit messages after the given position, optionally for a single user.
+    // Ordered by message_id, or by (time_posted_epoch, message_id) when byTime is set.
+    // One user's page comes from their shard; otherwise each shard returns its first limit rows and the
+    // pages are merged in the same order. Id-ordered pages stop below ids still being inserted (see ShardRouter),
+    // so a cursor never passes a row that appears later. Time-ordered pages follow the client-supplied
+    // time_posted_epoch, so a message posted later with an earlier time can land behind a cursor already handed out.
+    @Override
+    public List<Message> getMessagesPage(Integer posted_by, boolean byTime, long after_time, int after_id, int limit) {
+        long start = System.nanoTime();
+        List<Message> messageList = new ArrayList<>();
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM message WHERE ");
+        if (posted_by != null) {
+            sql.append("posted_by = ? AND ");
+        }
+        if (byTime) {
+            sql.append("(time_posted_epoch > ? OR (time_posted_epoch = ? AND message_id > ?)) ORDER BY time_posted_epoch, message_id");
+        } else {
+            sql.append("message_id > ? AND message_id <= ? ORDER BY message_id");
+        }
+        sql.append(" LIMIT ?;");
+        int settledId = ShardRouter.getSettledMessageId(); // Ids past it may still be committing on another shard
+
+        ShardQuery<List<Message>> page = shard -> {
+            List<Message> shardList = new ArrayList<>();
+            try (Connection connection = ShardRouter.getConnection(shard);
+                 PreparedStatement preparedStatement = connection.prepareStatement(sql.toString())) {
+                int index = 1;
+                if (posted_by != null) {
+                    preparedStatement.setInt(index++, posted_by);
+                }
+                if (byTime) {
+                    preparedStatement.setLong(index++, after_time);
+                    preparedStatement.setLong(index++, after_time);
+                }
+                preparedStatement.setInt(index++, after_id);
+                if (!byTime) {
+                    preparedStatement.setInt(index++, settledId);
+                }
+                preparedStatement.setInt(index, limit);
+
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        shardList.add(new Message(resultSet.getInt("message_id"), resultSet.getInt("posted_by"), resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch")));
+                    }
+                }
+            }
+            return shardList;
+        };
+
+        try {
+            if (posted_by != null || ShardRouter.getShardCount() == 1) {
+                messageList = page.run(posted_by != null ? ShardRouter.shardFor(posted_by) : 0);
+            } else {
+                for (List<Message> shardList : scatter(page)) {
+                    messageList.addAll(shardList);
+                }
+                messageList.sort(byTime
+                        ? Comparator.comparingLong(Message::getTime_posted_epoch).thenComparingInt(Message::getMessage_id)
+                        : Comparator.comparingInt(Message::getMessage_id));
+                if (messageList.size() > limit) {
+                    messageList = new ArrayList<>(messageList.subList(0, limit));
+                }
+            }
+        } catch (SQLException e) {
+            throw GET_MESSAGES_PAGE.error(e);
+        }
+
+        GET_MESSAGES_PAGE.record(start, messageList.size());
+        return messageList;
+    }
+
+    // One statement's worth of work against one shard
+    private interface ShardQuery<T> {
+        T run(int shard) throws SQLException;
+    }
+
+    private interface Parameters {
+        void set(PreparedStatement preparedStatement) throws SQLException;
+    }
+
+    // Run the query on every shard at once and return the answers in shard order; the first failure is rethrown
+    private static <T> List<T> scatter(ShardQuery<T> query) throws SQLException {
+        int shards = ShardRouter.getShardCount();
+        if (shards == 1) {
+            return Collections.singletonList(query.run(0));
+        }
+        List<Future<T>> futures = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int target = shard;
+            futures.add(SHARD_EXECUTOR.submit(() -> query.run(target)));
+        }
+        List<T> results = new ArrayList<>(shards);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Shard query failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the shards", e);
+        }
+        return results;
+    }
+
+    // The row returned by a single-row statement on the given connection, which is closed afterwards; or null
+    private static Message querySingle(Connection shardConnection, String sql, Parameters parameters) throws SQLException {
+        try (Connection connection = shardConnection;
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            parameters.set(preparedStatement);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return new Message(resultSet.getInt("message_id"), resultSet.getInt("posted_by"), resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch"));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Message first(List<Message> messages) {
+        for (Message message : messages) {
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+}
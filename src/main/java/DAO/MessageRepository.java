@@ -0,0 +1,50 @@
+package DAO;
+
+import java.util.List;
+import java.util.function.Consumer;
+import Model.Message;
+
+/**
+ * Storage for messages. MessageDAO keeps them in h2; InMemoryMessageRepository keeps them in concurrent maps.
+ * Implementations follow MessageDAO's contract: invalid input and missing rows give null or an empty list,
+ * a storage failure throws Util.DataAccessException, and a message can only be posted by an existing account.
+ */
+public interface MessageRepository {
+    // Returns the stored message with its generated message_id, or null if the text is invalid or posted_by does not exist
+    Message addMessage(String message_text, int account_id, long time_posted_epoch);
+
+    // Stores all messages or none; returns them with their generated ids in input order, or null if nothing was stored
+    List<Message> addMessages(List<Message> messages);
+
+    List<Message> getAllMessages();
+
+    // Hands every message to the consumer without building a list; a failure part way through is thrown
+    void streamAllMessages(Consumer<Message> consumer);
+
+    Message getMessageById(int message_id);
+
+    // Returns the stored messages among the given ids, in no particular order; ids with no message are left out
+    List<Message> getMessagesByIds(int[] message_ids);
+
+    // Returns the deleted message, or null if there was none
+    default Message removeMessageById(int message_id) {
+        return removeMessageById(message_id, null);
+    }
+
+    // As above, but only deletes the message if posted_by (when not null) posted it; null then also covers someone else's message
+    Message removeMessageById(int message_id, Integer posted_by);
+
+    // Returns the updated message, or null if the text is invalid or the message does not exist
+    default Message modifyMessage(int message_id, String newMessage) {
+        return modifyMessage(message_id, null, newMessage);
+    }
+
+    // As above, but only updates the message if posted_by (when not null) posted it; null then also covers someone else's message
+    Message modifyMessage(int message_id, Integer posted_by, String newMessage);
+
+    List<Message> getMessagesByUser(int account_id);
+
+    // Up to limit messages after the given position, optionally for one user, ordered by message_id
+    // or by (time_posted_epoch, message_id) when byTime is set
+    List<Message> getMessagesPage(Integer posted_by, boolean byTime, long after_time, int after_id, int limit);
+}
@@ -0,0 +1,48 @@
+package DAO;
+
+/**
+ * The storage engine behind the services, picked with -Dstorage: "h2" (default) keeps everything in the database
+ * through the DAOs; "memory" keeps accounts and messages in InMemoryAccountRepository and InMemoryMessageRepository.
+ * The in-memory engine starts from a copy of what is in h2 at that moment and never reads or writes h2 again, so
+ * data must reach it through the repositories.
+ */
+public class Repositories {
+    public static final String STORAGE = System.getProperty("storage", "h2");
+
+    private final AccountRepository accounts;
+    private final MessageRepository messages;
+
+    public Repositories(AccountRepository accounts, MessageRepository messages) {
+        this.accounts = accounts;
+        this.messages = messages;
+    }
+
+    // Method to build the engine named by -Dstorage
+    public static Repositories create() {
+        switch (STORAGE) {
+            case "h2":
+                return new Repositories(new AccountDAO(), new MessageDAO());
+            case "memory":
+                return inMemory();
+            default:
+                throw new IllegalArgumentException("Unknown storage engine: " + STORAGE);
+        }
+    }
+
+    // Method to build the in-memory engine, loaded with the accounts and messages currently in h2
+    public static Repositories inMemory() {
+        InMemoryAccountRepository accounts = new InMemoryAccountRepository();
+        new AccountDAO().getAllAccounts().forEach(accounts::load);
+        InMemoryMessageRepository messages = new InMemoryMessageRepository(accounts);
+        new MessageDAO().streamAllMessages(messages::load);
+        return new Repositories(accounts, messages);
+    }
+
+    public AccountRepository getAccounts() {
+        return accounts;
+    }
+
+    public MessageRepository getMessages() {
+        return messages;
+    }
+}
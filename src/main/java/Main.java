@@ -1,4 +1,6 @@
 import Controller.SocialMediaController;
+import Util.MigrationRunner;
+import Util.ReplicaShipper;
 import io.javalin.Javalin;
 
 /**
@@ -7,6 +9,8 @@ import io.javalin.Javalin;
  */
 public class Main {
     public static void main(String[] args) {
+        MigrationRunner.migrate(); // Bring the schema up to date without touching existing data
+        ReplicaShipper.start(); // Copy to the read replica and keep it current, if -Dreplica.enabled=true
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
         app.start(8080);
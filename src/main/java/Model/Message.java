@@ -1,4 +1,7 @@
 package Model;
+
+import java.util.Objects;
+
 /**
  * This is a class that models a Message.
  *
@@ -126,6 +129,14 @@ public class Message {
         return message_id == message.message_id && posted_by == message.posted_by
                 && time_posted_epoch == message.time_posted_epoch && message_text.equals(message.message_text);
     }
+    /**
+     * Overriding hashCode() alongside equals() keeps equal messages equal as HashMap keys and HashSet members.
+     * @return a hash of the fields compared by equals().
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(message_id, posted_by, message_text, time_posted_epoch);
+    }
     /**
      * Overriding the default toString() method allows for easy debugging.
      * @return a String representation of this class.
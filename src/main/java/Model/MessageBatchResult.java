@@ -0,0 +1,79 @@
+package Model;
+
+import java.util.Objects;
+
+/**
+ * This is a class that models the outcome of one item of a POST /messages/batch request.
+ */
+public class MessageBatchResult {
+    /**
+     * Position of the item in the request array.
+     */
+    public int index;
+    /**
+     * Status the item would have received from POST /messages: 200 when created, 400 when rejected.
+     */
+    public int status;
+    /**
+     * The created message, including its generated message_id. Null when the item was rejected.
+     */
+    public Message message;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageBatchResult() {
+    }
+
+    public MessageBatchResult(int index, int status, Message message) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageBatchResult result = (MessageBatchResult) o;
+        return index == result.index && status == result.status && Objects.equals(message, result.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, status, message);
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "index=" + index +
+                ", status=" + status +
+                ", message=" + message +
+                '}';
+    }
+}
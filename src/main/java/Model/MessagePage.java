@@ -0,0 +1,66 @@
+package Model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This is a class that models one page of a keyset-paginated message listing.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in cursor order.
+     */
+    public List<Message> messages;
+    /**
+     * An opaque cursor for the next page, to be passed back as ?after=. Null when this is the last page.
+     */
+    public String next_cursor;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage() {
+    }
+
+    public MessagePage(List<Message> messages, String next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public String getNext_cursor() {
+        return next_cursor;
+    }
+
+    public void setNext_cursor(String next_cursor) {
+        this.next_cursor = next_cursor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessagePage page = (MessagePage) o;
+        return Objects.equals(messages, page.messages) && Objects.equals(next_cursor, page.next_cursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(messages, next_cursor);
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_cursor='" + next_cursor + '\'' +
+                '}';
+    }
+}
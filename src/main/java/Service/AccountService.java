@@ -1,38 +1,138 @@
-
 package Service;
 
 import DAO.AccountDAO;
+import DAO.AccountRepository;
 import Model.Account;
+import Util.PasswordHasher;
+import java.util.*;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
 public class AccountService {
-    private AccountDAO accountDAO;
+    // Maximum number of accounts kept in each cache, overridable with -Daccounts.cacheSize
+    private static final long CACHE_SIZE = Long.getLong("accounts.cacheSize", 10_000);
+
+    private AccountRepository accountDAO;
+
+    // Read-through caches in front of the DAO lookups, bounded with W-TinyLFU eviction.
+    // Missing accounts are not cached, so a username is never reported free or taken from a stale entry.
+    private final LoadingCache<Integer, Account> accountsById;
+    private final LoadingCache<String, Account> accountsByUsername;
 
     public AccountService() {
-        accountDAO = new AccountDAO();
+        this(new AccountDAO());
     }
 
-    // Method to create a new account, ensuring the username is unique
+    // Constructor taking the storage engine, see DAO.Repositories
+    public AccountService(AccountRepository accountRepository) {
+        accountDAO = accountRepository;
+        accountsById = Caffeine.newBuilder()
+                .maximumSize(CACHE_SIZE)
+                .recordStats()
+                .build(this::loadAccountById);
+        accountsByUsername = Caffeine.newBuilder()
+                .maximumSize(CACHE_SIZE)
+                .recordStats()
+                .build(this::loadAccountByUsername);
+    }
+
+    // Method to create a new account, ensuring the username is unique. The password is stored hashed.
     public Account createAccount(Account account) {
-        if (accountDAO.getAccountByUsername(account.getUsername()) != null) {
+        String password = account.getPassword();
+        if (password == null || password.length() < 4) {
+            return null;
+        }
+        if (getAccountByUsername(account.getUsername()) != null) {
             return null;  // Return null if the username already exists
         }
-        return accountDAO.insertAccount(account); // Calls DAO to insert the account into the database
+        Account insertedAccount = accountDAO.insertAccount(new Account(account.getUsername(), PasswordHasher.hash(password))); // Calls DAO to insert the account into the database
+        invalidate(account.getUsername());
+        return insertedAccount;
     }
 
-    // Method to authenticate an account by username and password
+    // Method to authenticate an account by username and password.
+    // The stored hash comes from the username cache; this is the only place that pays for PBKDF2.
     public Account authenticateAccount(Account account) {
-        Account authenticatedAccount = accountDAO.getAccountByCredentials(account);
-        return authenticatedAccount;
+        String username = account.getUsername();
+        String password = account.getPassword();
+        if (username == null || username.trim().isEmpty() || password == null || password.trim().isEmpty())
+            return null;
+
+        Account storedAccount = getAccountByUsername(username);
+        if (storedAccount == null || !PasswordHasher.verify(password, storedAccount.getPassword())) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(storedAccount.getPassword())) { // Plain password or an older, cheaper hash
+            accountDAO.updatePassword(storedAccount.getAccount_id(), PasswordHasher.hash(password));
+            invalidate(username);
+        }
+        return storedAccount;
     }
 
     // Method to retrieve an account by its unique ID
     public Account getAccountById(int account_id) {
-        Account validatedAccount = accountDAO.getAccountById(account_id);
+        Account validatedAccount = accountsById.get(account_id);
         return validatedAccount;
     }
 
     // Method to retrieve an account by its username
     public Account getAccountByUsername(String username) {
-        return accountDAO.getAccountByUsername(username);
+        if (username == null) {
+            return null;
+        }
+        return accountsByUsername.get(username);
+    }
+
+    // Method to check many account ids at once: cached ids are answered from memory, the rest in one query
+    public Set<Integer> getExistingAccountIds(Collection<Integer> account_ids) {
+        Set<Integer> existing = new HashSet<>();
+        Set<Integer> uncached = new HashSet<>();
+        for (int account_id : account_ids) {
+            if (accountsById.getIfPresent(account_id) != null) {
+                existing.add(account_id);
+            } else {
+                uncached.add(account_id);
+            }
+        }
+        existing.addAll(accountDAO.getExistingAccountIds(uncached));
+        return existing;
+    }
+
+    // Hit, miss and eviction counters of the account_id cache
+    public CacheStats getIdCacheStats() {
+        return accountsById.stats();
+    }
+
+    // Hit, miss and eviction counters of the username cache
+    public CacheStats getUsernameCacheStats() {
+        return accountsByUsername.stats();
+    }
+
+    // Drop every cached entry for this username, called after any write to the account table
+    private void invalidate(String username) {
+        Account cached = accountsByUsername.getIfPresent(username);
+        if (cached != null) {
+            accountsById.invalidate(cached.getAccount_id());
+        }
+        accountsByUsername.invalidate(username);
+    }
+
+    // Cache loaders: a hit under one key also fills the other
+    private Account loadAccountById(Integer account_id) {
+        Account account = accountDAO.getAccountById(account_id);
+        if (account != null) {
+            accountsByUsername.put(account.getUsername(), account);
+        }
+        return account;
+    }
+
+    private Account loadAccountByUsername(String username) {
+        Account account = accountDAO.getAccountByUsername(username);
+        if (account != null) {
+            accountsById.put(account.getAccount_id(), account);
+        }
+        return account;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package Service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import Util.LatencyHistogram;
+import Util.Metrics;
+
+/**
+ * A bounded number of requests running at once for one class of routes, plus a bounded number waiting for a
+ * turn, so a flood on one class can only exhaust its own slots and queue and never those of another. When both
+ * are full, enter() returns false at once rather than queueing the request anywhere else.
+ *
+ * Requests run on the thread that serves them (a virtual thread with -Dserver.virtualThreads=true); a waiting
+ * request parks that thread on a fair semaphore, so requests are let in in the order they arrived.
+ *
+ * Sized per pool with -Dbulkhead.<name>.threads and -Dbulkhead.<name>.queue. Saturation is exported by GET /metrics
+ * as bulkhead_active_threads, bulkhead_queue_depth, bulkhead_rejected_total and bulkhead_queue_wait_seconds,
+ * labelled by pool, next to the configured bulkhead_max_threads and bulkhead_queue_capacity.
+ */
+public class Bulkhead {
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final Semaphore slots;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LatencyHistogram queueWait;
+
+    public Bulkhead(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.slots = new Semaphore(this.threads, true);
+        this.queueWait = Metrics.histogram("bulkhead_queue_wait_seconds", "Time requests waited for a bulkhead slot", "pool=\"" + name + "\"");
+    }
+
+    /**
+     * @return the bulkhead for this pool, sized from -Dbulkhead.<name>.threads and -Dbulkhead.<name>.queue
+     */
+    public static Bulkhead forPool(String name, int defaultThreads, int defaultQueue) {
+        return new Bulkhead(name,
+                Integer.getInteger("bulkhead." + name + ".threads", defaultThreads),
+                Integer.getInteger("bulkhead." + name + ".queue", defaultQueue));
+    }
+
+    // Method to take a slot for the current request, waiting in the queue if there is room in it.
+    // Returns false if the slots and queue are full; otherwise call exit() once the request is done
+    public boolean enter() {
+        if (waiting.get() == 0 && slots.tryAcquire()) { // Never ahead of a request already waiting
+            queueWait.recordNanos(0);
+            return true;
+        }
+        if (waiting.incrementAndGet() > queueCapacity) {
+            waiting.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+        queueWait.recordNanos(System.nanoTime() - queuedAt);
+        return true;
+    }
+
+    // Method to give back the slot taken by enter()
+    public void exit() {
+        completed.increment();
+        slots.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveThreads() {
+        return threads - slots.availablePermits();
+    }
+
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+}
@@ -0,0 +1,173 @@
+package Service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit on the requests handled at once, so excess load is turned away straight away instead of queueing
+ * in Jetty behind a slow database.
+ *
+ * The limit follows observed latency, gradient style: every window the average latency of the window (short RTT)
+ * is compared with a slow moving average of past windows (long RTT). While they agree the limit grows by about
+ * sqrt(limit) per window; when the short RTT rises past rttTolerance times the long one, the limit shrinks in
+ * proportion, down to half per window. Bulk requests do not feed the estimate, since their latency follows the
+ * size of the table rather than the load.
+ *
+ * Admission is by priority: critical requests (login, registration) may go a little over the limit, normal ones
+ * up to it, and bulk ones (full feed reads) only up to a share of it, so a burst of feed scans is refused before
+ * it can crowd out logins and point reads.
+ *
+ * Tuned with -Dlimiter.enabled (default true), -Dlimiter.initial, -Dlimiter.min, -Dlimiter.max,
+ * -Dlimiter.bulkShare (default 0.5) and -Dlimiter.rttTolerance (default 1.5).
+ */
+public class ConcurrencyLimiter {
+    public enum Priority { CRITICAL, NORMAL, BULK }
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("limiter.enabled", "true"));
+    private static final int INITIAL_LIMIT = Integer.getInteger("limiter.initial", 20);
+    private static final int MIN_LIMIT = Integer.getInteger("limiter.min", 4);
+    private static final int MAX_LIMIT = Integer.getInteger("limiter.max", 200);
+    private static final double BULK_SHARE = Double.parseDouble(System.getProperty("limiter.bulkShare", "0.5"));
+    private static final double RTT_TOLERANCE = Double.parseDouble(System.getProperty("limiter.rttTolerance", "1.5"));
+    // Critical requests may exceed the limit by this share of it
+    private static final double CRITICAL_HEADROOM = 0.25;
+    // A window closes after this long, once it holds enough samples
+    private static final long WINDOW_NANOS = 100_000_000L;
+    private static final int WINDOW_MIN_SAMPLES = 10;
+    // Windows averaged into the long RTT
+    private static final double LONG_WINDOWS = 100;
+    // Share of each new estimate taken into the limit
+    private static final double SMOOTHING = 0.2;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder windowNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder[] rejected = new LongAdder[Priority.values().length];
+    private volatile double limit = INITIAL_LIMIT;
+    private volatile double longRttNanos;
+    private volatile double shortRttNanos;
+
+    public ConcurrencyLimiter() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    // Method to claim a slot for one request.
+    // Returns the permit to release when the response is done, or null if the request should be refused with 503
+    public Permit tryAcquire(Priority priority) {
+        if (!ENABLED) {
+            return new Permit(priority);
+        }
+        double capacity = capacity(priority);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= capacity) {
+                rejected[priority.ordinal()].increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > peakInFlight.get()) {
+                    peakInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return new Permit(priority);
+            }
+        }
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getShortRttSeconds() {
+        return shortRttNanos / 1e9;
+    }
+
+    public double getLongRttSeconds() {
+        return longRttNanos / 1e9;
+    }
+
+    public long getRejectedCount(Priority priority) {
+        return rejected[priority.ordinal()].sum();
+    }
+
+    private double capacity(Priority priority) {
+        double current = limit;
+        switch (priority) {
+            case CRITICAL:
+                return current + Math.max(1, current * CRITICAL_HEADROOM);
+            case BULK:
+                return Math.max(1, current * BULK_SHARE);
+            default:
+                return current;
+        }
+    }
+
+    // Add one latency sample; the caller that closes the window recomputes the limit
+    private void sample(long nanos) {
+        windowNanos.add(nanos);
+        windowSamples.increment();
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start < WINDOW_NANOS || windowSamples.sum() < WINDOW_MIN_SAMPLES || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        long samples = windowSamples.sumThenReset();
+        long total = windowNanos.sumThenReset();
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        if (samples == 0) {
+            return;
+        }
+        update((double) total / samples, peak);
+    }
+
+    private void update(double shortRtt, int peak) {
+        double longRtt = longRttNanos == 0 ? shortRtt : longRttNanos + (shortRtt - longRttNanos) / LONG_WINDOWS;
+        if (longRtt > 2 * shortRtt) {
+            longRtt = 2 * shortRtt; // Latency has dropped for good (eg a checkpoint ended), do not keep the old baseline
+        }
+        longRttNanos = longRtt;
+        shortRttNanos = shortRtt;
+
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+        double estimate = current * gradient + Math.sqrt(current);
+        if (estimate > current && peak < current / 2) {
+            estimate = current; // Not using the limit we have, so latency says nothing about a higher one
+        }
+        limit = Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, current * (1 - SMOOTHING) + estimate * SMOOTHING));
+    }
+
+    /**
+     * One admitted request; release it exactly once, when its response is done.
+     */
+    public class Permit {
+        private final Priority priority;
+        private final long start = System.nanoTime();
+
+        private Permit(Priority priority) {
+            this.priority = priority;
+        }
+
+        public void release() {
+            if (!ENABLED) {
+                return;
+            }
+            inFlight.decrementAndGet();
+            if (priority != Priority.BULK) {
+                sample(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package Service;
+
+import DAO.MessageRepository;
+import Model.Message;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind queue for message creation. Callers enqueue a message and get a future; a single writer
+ * thread drains the queue and commits groups of inserts in one transaction, either every flush interval
+ * or as soon as a group is full. The future completes with the generated id once its group is committed.
+ * shutdown() lets the writer commit what is already queued and then stops its thread.
+ */
+public class GroupCommitWriter {
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    private final MessageRepository messageDAO;
+    private final BlockingQueue<PendingMessage> queue;
+    private final int maxGroupSize;
+    private final long flushIntervalNanos;
+    private final long enqueueTimeoutMs;
+
+    // Counters, read by getters for monitoring
+    private final LongAdder groupsCommitted = new LongAdder();
+    private final LongAdder messagesCommitted = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    // Queued by shutdown(); the writer stops once it reaches it
+    private final PendingMessage stop = new PendingMessage(null);
+    private volatile boolean stopped;
+    // Set by the writer just before its last drain of the queue; a message queued after that drain takes itself back
+    private volatile boolean closed;
+    private final Thread writer;
+
+    public GroupCommitWriter(MessageRepository messageDAO, int maxGroupSize, long flushIntervalMs, int queueDepth, long enqueueTimeoutMs) {
+        this.messageDAO = messageDAO;
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.maxGroupSize = maxGroupSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+
+        writer = new Thread(this::run, "message-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Queue a message for the next group. Blocks while the queue is full, and fails the future with
+    // RejectedExecutionException if no room frees up within the enqueue timeout.
+    public CompletableFuture<Message> submit(Message message) {
+        PendingMessage pending = new PendingMessage(message);
+        if (stopped) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Message writer is shut down"));
+            return pending.future;
+        }
+        try {
+            if (!queue.offer(pending, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                pending.future.completeExceptionally(new RejectedExecutionException("Message queue is full"));
+            } else if (closed && queue.remove(pending)) { // Queued after the writer's last drain, nothing would take it
+                pending.future.completeExceptionally(new RejectedExecutionException("Message writer is shut down"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        return pending.future;
+    }
+
+    // Method to stop accepting messages, commit those already queued and end the writer thread, used when the
+    // server stops. A message submitted concurrently is either committed or rejected with RejectedExecutionException;
+    // its future completes either way.
+    public void shutdown() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        try {
+            queue.put(stop);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<PendingMessage> group = new ArrayList<>(maxGroupSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                group.add(queue.take());
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (group.size() < maxGroupSize) { // Collect until the group is full or the flush interval runs out
+                    if (queue.drainTo(group, maxGroupSize - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                stopping = group.remove(stop);
+                if (!group.isEmpty()) {
+                    commit(group);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (PendingMessage pending : group) {
+                    pending.future.completeExceptionally(e);
+                }
+                stopping = true;
+            } catch (RuntimeException e) {
+                logger.error("Group commit of {} messages failed", group.size(), e);
+                for (PendingMessage pending : group) { // Never leave a caller waiting on a lost group
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                group.clear();
+            }
+        }
+
+        // Messages that slipped in behind the stop marker are refused rather than left waiting. One queued after
+        // this drain sees closed once its offer returns and takes itself back out of the queue.
+        closed = true;
+        queue.drainTo(group);
+        group.remove(stop);
+        for (PendingMessage pending : group) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Message writer is shut down"));
+        }
+    }
+
+    private void commit(List<PendingMessage> group) {
+        List<Message> messages = new ArrayList<>(group.size());
+        for (PendingMessage pending : group) {
+            messages.add(pending.message);
+        }
+
+        long start = System.nanoTime();
+        List<Message> insertedMessages = messageDAO.addMessages(messages);
+        if (insertedMessages != null) {
+            commitNanos.add(System.nanoTime() - start);
+            groupsCommitted.increment();
+            messagesCommitted.add(insertedMessages.size());
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).future.complete(insertedMessages.get(i));
+            }
+            return;
+        }
+
+        // The group was rolled back; retry one by one so a single bad row does not fail its neighbours.
+        // Each retried insert is its own transaction, so it is counted as a group of one.
+        for (PendingMessage pending : group) {
+            Message message = pending.message;
+            start = System.nanoTime();
+            Message inserted = messageDAO.addMessage(message.getMessage_text(), message.getPosted_by(), message.getTime_posted_epoch());
+            if (inserted != null) {
+                commitNanos.add(System.nanoTime() - start);
+                groupsCommitted.increment();
+                messagesCommitted.increment();
+            }
+            pending.future.complete(inserted);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getGroupsCommitted() {
+        return groupsCommitted.sum();
+    }
+
+    public long getMessagesCommitted() {
+        return messagesCommitted.sum();
+    }
+
+    public long getCommitNanos() {
+        return commitNanos.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public double getAvgGroupSize() {
+        long groups = groupsCommitted.sum();
+        return groups == 0 ? 0 : (double) messagesCommitted.sum() / groups;
+    }
+
+    private static class PendingMessage {
+        final Message message;
+        final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+}
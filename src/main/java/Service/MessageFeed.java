@@ -0,0 +1,184 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import Controller.JsonSupport;
+import Model.Message;
+
+/**
+ * Fan-out of message events (created, updated, deleted) to live subscribers, in the server-sent events format.
+ *
+ * Each event is serialized once into a byte array and the same array is queued to every matching subscriber.
+ * Subscriber queues are bounded and publish() never blocks: when a queue is full the subscriber is either
+ * disconnected (default) or, with -Dfeed.dropOnOverflow=true, loses that event and sees a gap in the event ids.
+ */
+public class MessageFeed {
+    // Events buffered per subscriber, overridable with -Dfeed.bufferEvents
+    private static final int BUFFER_EVENTS = Integer.getInteger("feed.bufferEvents", 256);
+    private static final boolean DROP_ON_OVERFLOW = Boolean.getBoolean("feed.dropOnOverflow");
+
+    private static final byte[] CLOSE = new byte[0];
+
+    // Most concurrent subscribers per server, overridable with -Dfeed.maxSubscribers and lowered by limitSubscribers
+    private volatile int maxSubscribers = Integer.getInteger("feed.maxSubscribers", 1000);
+    private final Set<Subscription> everyone = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Integer, Set<Subscription>> byAccount = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong subscribers = new AtomicLong();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    /**
+     * @return a new subscription to every event, or only to posted_by's messages; null if the server is full
+     */
+    public Subscription subscribe(Integer posted_by) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return null;
+        }
+        Subscription subscription = new Subscription(posted_by);
+        if (posted_by == null) {
+            everyone.add(subscription);
+        } else {
+            byAccount.compute(posted_by, (id, followers) -> {
+                Set<Subscription> set = followers == null ? ConcurrentHashMap.newKeySet() : followers;
+                set.add(subscription);
+                return set;
+            });
+        }
+        return subscription;
+    }
+
+    // Method to lower the most concurrent subscribers, eg so open feeds cannot hold every server thread
+    public void limitSubscribers(int max) {
+        maxSubscribers = Math.max(1, Math.min(maxSubscribers, max));
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    // Method to queue one event for every matching subscriber, called after the write it describes has returned.
+    // Event ids follow the order of the calls; MessageService makes the calls for one message in write order
+    public void publish(String type, Message message) {
+        if (message == null || subscribers.get() == 0) {
+            return;
+        }
+        byte[] event = encode(sequence.incrementAndGet(), type, message);
+        published.increment();
+        for (Subscription subscription : everyone) {
+            subscription.offer(event);
+        }
+        Set<Subscription> followers = byAccount.get(message.getPosted_by());
+        if (followers != null) {
+            for (Subscription subscription : followers) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    // Method to end every subscription, used when the server stops
+    public void closeAll() {
+        for (Subscription subscription : everyone) {
+            subscription.close();
+        }
+        for (Set<Subscription> followers : byAccount.values()) {
+            for (Subscription subscription : followers) {
+                subscription.close();
+            }
+        }
+    }
+
+    public long getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getDisconnectedCount() {
+        return disconnected.sum();
+    }
+
+    private static byte[] encode(long id, String type, Message message) {
+        try {
+            String data = JsonSupport.MAPPER.writeValueAsString(message);
+            return ("id: " + id + "\nevent: " + type + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize message " + message.getMessage_id(), e);
+        }
+    }
+
+    /**
+     * One subscriber's bounded queue of encoded events, drained by the thread serving its response.
+     */
+    public class Subscription implements AutoCloseable {
+        private final Integer posted_by;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(BUFFER_EVENTS);
+        private volatile boolean closed;
+
+        private Subscription(Integer posted_by) {
+            this.posted_by = posted_by;
+        }
+
+        private void offer(byte[] event) {
+            if (closed || queue.offer(event)) {
+                return;
+            }
+            if (DROP_ON_OVERFLOW) {
+                dropped.increment();
+            } else {
+                disconnected.increment();
+                close(); // Too slow to keep up; never let it hold back the writers
+            }
+        }
+
+        // The next encoded event, or null if none arrived within the timeout or the subscription was closed
+        public byte[] next(long timeout, TimeUnit unit) throws InterruptedException {
+            if (closed) {
+                return null;
+            }
+            byte[] event = queue.poll(timeout, unit);
+            return event == CLOSE ? null : event;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (posted_by == null) {
+                everyone.remove(this);
+            } else {
+                byAccount.computeIfPresent(posted_by, (id, followers) -> {
+                    followers.remove(this);
+                    return followers.isEmpty() ? null : followers;
+                });
+            }
+            subscribers.decrementAndGet();
+            queue.clear();
+            queue.offer(CLOSE); // Wake up the serving thread
+        }
+    }
+}
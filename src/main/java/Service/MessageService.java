@@ -1,20 +1,158 @@
 package Service;
 
 import DAO.MessageDAO;
+import DAO.MessageRepository;
+import Util.ConnectionUtil;
 import Model.Message;
+import Model.MessagePage;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
 public class MessageService {
-    private MessageDAO messageDAO;
+    // Upper bound on the number of messages held across all cached timelines, overridable with -Dtimelines.cacheMessages
+    private static final long TIMELINE_CACHE_MESSAGES = Long.getLong("timelines.cacheMessages", 100_000);
+    // Counter slots behind the message and timeline ETags, overridable with -Dmessages.versionSlots
+    private static final int VERSION_SLOTS = Integer.getInteger("messages.versionSlots", 65_536);
+    // In-memory full-text index behind GET /messages/search, built at startup; -Dsearch.enabled=false skips it
+    private static final boolean SEARCH_ENABLED = Boolean.parseBoolean(System.getProperty("search.enabled", "true"));
+
+    // Group-commit write-behind for addMessage, off by default. Enable with -Dmessages.groupCommit=true;
+    // group size, flush interval, queue depth and enqueue timeout are tuned with the properties below.
+    private static final boolean GROUP_COMMIT_ENABLED = Boolean.getBoolean("messages.groupCommit");
+    private GroupCommitWriter groupCommitWriter;
+
+    private MessageRepository messageDAO;
+
+    // Each user's full message list, keyed by account_id and weighed by message count.
+    // Every write path below invalidates the affected user after its write returns; Caffeine makes an
+    // invalidation wait for an in-flight load of the same key, so a stale list is never left behind.
+    private final LoadingCache<Integer, List<Message>> timelines;
+
+    // ETag versions per message_id and per account_id (timeline), bumped by the same write paths
+    private final ResourceVersions messageVersions = new ResourceVersions(VERSION_SLOTS);
+    private final ResourceVersions timelineVersions = new ResourceVersions(VERSION_SLOTS);
+
+    // Null when search is disabled
+    private final SearchIndex searchIndex;
+
+    // Change kinds passed to written() and sent as the live feed's event names
+    private static final String CREATED = "created";
+    private static final String UPDATED = "updated";
+    private static final String DELETED = "deleted";
+    private final MessageFeed feed = new MessageFeed();
+    // An update or delete runs its write and publishes its event under the message's stripe, so the feed numbers
+    // the events of one message in the order the database applied them
+    private final Object[] writeStripes = new Object[256];
 
     public MessageService() {
-        messageDAO = new MessageDAO();
+        this(new MessageDAO());
+    }
+
+    // Constructor taking the storage engine, see DAO.Repositories
+    public MessageService(MessageRepository messageRepository) {
+        messageDAO = messageRepository;
+        timelines = Caffeine.newBuilder()
+                .maximumWeight(TIMELINE_CACHE_MESSAGES)
+                .weigher((Integer account_id, List<Message> messages) -> messages.size() + 1)
+                .recordStats()
+                .build(this::loadTimeline);
+        searchIndex = SEARCH_ENABLED ? buildSearchIndex() : null;
+        for (int i = 0; i < writeStripes.length; i++) {
+            writeStripes[i] = new Object();
+        }
+    }
+
+    // Timeline cache loader. With a read replica it may read from it, but only once the replica holds the
+    // user's latest write: written() records that before invalidating, so a stale list is never cached.
+    private List<Message> loadTimeline(Integer account_id) {
+        return ConnectionUtil.readAfter(timelineVersions.lastWrite(account_id),
+                () -> Collections.unmodifiableList(messageDAO.getMessagesByUser(account_id)));
+    }
+
+    // Index every stored message once, streamed from the DAO
+    private SearchIndex buildSearchIndex() {
+        SearchIndex index = new SearchIndex(messageDAO::getMessagesByIds);
+        messageDAO.streamAllMessages(index::add);
+        return index;
     }
 
     // تم تغيير اسم الدالة
+    // With group commit enabled this waits until the message's group is committed.
+    // Throws RejectedExecutionException if the write queue stays full past the enqueue timeout, and the writer's
+    // DataAccessException if the group could not be stored.
     public Message addMessage(String message_text, int account_id, long time_posted_epoch) {
-        Message newMessage = messageDAO.addMessage(message_text, account_id, time_posted_epoch);
-        return newMessage;
+        if (!GROUP_COMMIT_ENABLED) {
+            Message newMessage = messageDAO.addMessage(message_text, account_id, time_posted_epoch);
+            written(CREATED, newMessage);
+            return newMessage;
+        }
+
+        try {
+            Message newMessage = addMessageAsync(message_text, account_id, time_posted_epoch).get();
+            written(CREATED, newMessage);
+            return newMessage;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause(); // RejectedExecutionException or the group's DataAccessException
+            }
+            throw new IllegalStateException("Group commit failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for group commit", e);
+        }
+    }
+
+    // Method to enqueue a message for the group-commit writer; the future completes with the
+    // generated message_id once the group is durable, or with null if the message was rejected
+    public CompletableFuture<Message> addMessageAsync(String message_text, int account_id, long time_posted_epoch) {
+        if (message_text == null || message_text.trim().isEmpty() || message_text.length() > 255) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return getGroupCommitWriter().submit(new Message(account_id, message_text, time_posted_epoch));
+    }
+
+    public static boolean isGroupCommitEnabled() {
+        return GROUP_COMMIT_ENABLED;
+    }
+
+    // The writer is started on first use and commits to this service's storage engine
+    public synchronized GroupCommitWriter getGroupCommitWriter() {
+        if (groupCommitWriter == null) {
+            groupCommitWriter = new GroupCommitWriter(messageDAO,
+                    Integer.getInteger("messages.groupCommit.maxGroupSize", 64),
+                    Long.getLong("messages.groupCommit.flushIntervalMs", 2),
+                    Integer.getInteger("messages.groupCommit.queueDepth", 4096),
+                    Long.getLong("messages.groupCommit.enqueueTimeoutMs", 100));
+        }
+        return groupCommitWriter;
+    }
+
+    // Method to stop the group-commit writer once it has committed what is queued, used when the server stops
+    public synchronized void shutdown() {
+        if (groupCommitWriter != null) {
+            groupCommitWriter.shutdown();
+        }
+    }
+
+    // Method to insert many already-validated messages in one transaction, null if nothing was inserted
+    public List<Message> addMessages(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Message> insertedMessages = messageDAO.addMessages(messages);
+        if (insertedMessages != null) {
+            for (Message message : insertedMessages) {
+                written(CREATED, message);
+            }
+        }
+        return insertedMessages;
     }
 
     public List<Message> getAllMessages() {
@@ -22,24 +160,137 @@ public class MessageService {
         return messagesList;
     }
 
+    // Method to stream all messages one by one; throws DataAccessException if the read fails part way through
+    public void streamAllMessages(Consumer<Message> consumer) {
+        messageDAO.streamAllMessages(consumer);
+    }
+
+    // With a read replica this is served by it once it holds the message's latest write
     public Message getMessageById(int message_id) {
-        Message returnedMessage = messageDAO.getMessageById(message_id);
-        return returnedMessage;
+        return ConnectionUtil.readAfter(messageVersions.lastWrite(message_id), () -> messageDAO.getMessageById(message_id));
     }
 
     public Message removeMessageById(int message_id) {
-        Message deletedMessage = messageDAO.removeMessageById(message_id);
-        return deletedMessage;
+        return removeMessageById(message_id, null);
+    }
+
+    // Method to delete a message only if posted_by (when not null) posted it, checked by the delete itself
+    public Message removeMessageById(int message_id, Integer posted_by) {
+        synchronized (writeStripe(message_id)) {
+            Message deletedMessage = messageDAO.removeMessageById(message_id, posted_by);
+            written(DELETED, deletedMessage);
+            return deletedMessage;
+        }
     }
 
     public Message modifyMessage(int message_id, String newMessage) {
-        Message returnedMessage = messageDAO.modifyMessage(message_id, newMessage);
-        return returnedMessage;
+        return modifyMessage(message_id, null, newMessage);
+    }
+
+    // Method to update a message only if posted_by (when not null) posted it, checked by the update itself
+    public Message modifyMessage(int message_id, Integer posted_by, String newMessage) {
+        synchronized (writeStripe(message_id)) {
+            Message returnedMessage = messageDAO.modifyMessage(message_id, posted_by, newMessage);
+            written(UPDATED, returnedMessage);
+            return returnedMessage;
+        }
     }
 
-    // Method to retrieve all messages posted by a specific user
+    // Method to retrieve all messages posted by a specific user, served from the timeline cache.
+    // The returned list is shared and read-only.
     public List<Message> getMessagesByUser(int account_id) {
-        List<Message> messagesList = messageDAO.getMessagesByUser(account_id);
+        List<Message> messagesList = timelines.get(account_id);
         return messagesList;
     }
+
+    // Hit, miss and eviction counters of the timeline cache
+    public CacheStats getTimelineCacheStats() {
+        return timelines.stats();
+    }
+
+    public static boolean isSearchEnabled() {
+        return SEARCH_ENABLED;
+    }
+
+    // Number of indexed messages and distinct tokens, 0 when search is disabled
+    public int getSearchIndexMessages() {
+        return searchIndex == null ? 0 : searchIndex.getMessageCount();
+    }
+
+    public int getSearchIndexTokens() {
+        return searchIndex == null ? 0 : searchIndex.getTokenCount();
+    }
+
+    // Method to retrieve one page of search results by ascending message_id, null if search is disabled.
+    // Fetches one extra result to find out whether a next page exists.
+    public MessagePage searchMessages(String query, PageCursor after, int limit) {
+        if (searchIndex == null) {
+            return null;
+        }
+        List<Message> messagesList = searchIndex.search(query, after.getMessage_id(), limit + 1);
+
+        String nextCursor = null;
+        if (messagesList.size() > limit) {
+            messagesList = new ArrayList<>(messagesList.subList(0, limit));
+            nextCursor = new PageCursor(PageCursor.ORDER_ID, 0, messagesList.get(limit - 1).getMessage_id()).encode();
+        }
+        return new MessagePage(messagesList, nextCursor);
+    }
+
+    // Weak ETag of GET /messages/{message_id}, taken before the message is read
+    public String getMessageEtag(int message_id) {
+        return messageVersions.etag(message_id);
+    }
+
+    // Weak ETag of GET /accounts/{account_id}/messages, taken before the timeline is read
+    public String getTimelineEtag(int account_id) {
+        return timelineVersions.etag(account_id);
+    }
+
+    // Called after every write that touched the message, with the kind of change (CREATED, UPDATED or DELETED):
+    // drops the author's cached timeline, bumps the ETag versions, updates the search index and publishes the event
+    private void written(String change, Message message) {
+        if (message == null) {
+            return;
+        }
+        messageVersions.written(message.getMessage_id()); // Before the invalidation, so a reload knows how fresh it must be
+        timelineVersions.written(message.getPosted_by());
+        timelines.invalidate(message.getPosted_by());
+        messageVersions.bump(message.getMessage_id()); // After it, so an ETag never moves ahead of its body
+        timelineVersions.bump(message.getPosted_by());
+        if (searchIndex != null) {
+            if (change.equals(DELETED)) {
+                searchIndex.remove(message);
+            } else if (change.equals(UPDATED)) {
+                searchIndex.update(message);
+            } else {
+                searchIndex.add(message);
+            }
+        }
+        feed.publish(change, message);
+    }
+
+    private Object writeStripe(int message_id) {
+        return writeStripes[(message_id & 0x7FFFFFFF) % writeStripes.length];
+    }
+
+    // Live feed of created, updated and deleted messages behind GET /messages/live
+    public MessageFeed getFeed() {
+        return feed;
+    }
+
+    // Method to retrieve one keyset page of messages, for all users (posted_by == null) or a single user.
+    // Fetches one extra row to find out whether a next page exists.
+    public MessagePage getMessagesPage(Integer posted_by, PageCursor after, int limit) {
+        List<Message> messagesList = messageDAO.getMessagesPage(posted_by, after.isTimeOrdered(),
+                after.getTime_posted_epoch(), after.getMessage_id(), limit + 1);
+
+        String nextCursor = null;
+        if (messagesList.size() > limit) {
+            messagesList = new ArrayList<>(messagesList.subList(0, limit));
+            Message last = messagesList.get(limit - 1);
+            nextCursor = new PageCursor(after.getOrder(), last.getTime_posted_epoch(), last.getMessage_id()).encode();
+        }
+        return new MessagePage(messagesList, nextCursor);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last row on a page, encoded into the opaque next_cursor handed to clients.
+ * Messages are ordered either by message_id, or by (time_posted_epoch, message_id).
+ */
+public class PageCursor {
+    public static final String ORDER_ID = "id";
+    public static final String ORDER_TIME = "time";
+
+    private final String order;
+    private final long time_posted_epoch;
+    private final int message_id;
+
+    public PageCursor(String order, long time_posted_epoch, int message_id) {
+        this.order = order;
+        this.time_posted_epoch = time_posted_epoch;
+        this.message_id = message_id;
+    }
+
+    // Cursor positioned before the first row, used when the client sends no ?after=
+    public static PageCursor start(String order) {
+        return new PageCursor(order, Long.MIN_VALUE, 0);
+    }
+
+    // Encode as base64url("id:<message_id>") or base64url("time:<epoch>:<message_id>")
+    public String encode() {
+        String raw = ORDER_TIME.equals(order) ? order + ":" + time_posted_epoch + ":" + message_id : order + ":" + message_id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Decode a cursor previously produced by encode(); throws IllegalArgumentException on anything else
+    public static PageCursor decode(String cursor) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+        try {
+            if (parts.length == 2 && ORDER_ID.equals(parts[0])) {
+                return new PageCursor(ORDER_ID, Long.MIN_VALUE, Integer.parseInt(parts[1]));
+            }
+            if (parts.length == 3 && ORDER_TIME.equals(parts[0])) {
+                return new PageCursor(ORDER_TIME, Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        throw new IllegalArgumentException("Malformed cursor");
+    }
+
+    public String getOrder() {
+        return order;
+    }
+
+    public boolean isTimeOrdered() {
+        return ORDER_TIME.equals(order);
+    }
+
+    public long getTime_posted_epoch() {
+        return time_posted_epoch;
+    }
+
+    public int getMessage_id() {
+        return message_id;
+    }
+}
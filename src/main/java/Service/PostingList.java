@@ -0,0 +1,218 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sorted message_ids for one search token, compressed as blocks of delta-encoded varints.
+ *
+ * New messages get increasing ids, so adds almost always append to the last block in place; inserting or removing
+ * an older id re-encodes just the block holding it. Searches take the read lock and run concurrently; a write
+ * locks only this token's list.
+ */
+class PostingList {
+    private static final int BLOCK_SIZE = 128;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Block> blocks = new ArrayList<>();
+    private int size;
+
+    void add(int message_id) {
+        lock.writeLock().lock();
+        try {
+            Block tail = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+            if (tail == null || (message_id > tail.last && tail.count >= BLOCK_SIZE)) {
+                blocks.add(Block.of(new int[] { message_id }, 1));
+            } else if (message_id > tail.last) {
+                tail.append(message_id);
+            } else {
+                int index = blockFor(message_id);
+                int[] ids = blocks.get(index).decode();
+                int position = Arrays.binarySearch(ids, message_id);
+                if (position >= 0) {
+                    return; // Already present
+                }
+                position = -position - 1;
+                int[] inserted = new int[ids.length + 1];
+                System.arraycopy(ids, 0, inserted, 0, position);
+                inserted[position] = message_id;
+                System.arraycopy(ids, position, inserted, position + 1, ids.length - position);
+                replace(index, inserted, inserted.length);
+            }
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int message_id) {
+        lock.writeLock().lock();
+        try {
+            if (blocks.isEmpty()) {
+                return;
+            }
+            int index = blockFor(message_id);
+            int[] ids = blocks.get(index).decode();
+            int position = Arrays.binarySearch(ids, message_id);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, ids.length - position - 1);
+            replace(index, ids, ids.length - 1);
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit ids greater than after_id, in ascending order
+    int[] idsAfter(int after_id, int limit) {
+        return ids(after_id, Integer.MAX_VALUE, limit);
+    }
+
+    // Ids greater than after_id and at most up_to, in ascending order
+    int[] idsBetween(int after_id, int up_to) {
+        return ids(after_id, up_to, Integer.MAX_VALUE);
+    }
+
+    // Blocks that end at or before after_id are skipped by a binary search on their last id, and decoding stops
+    // at the first block that starts past up_to, or as soon as limit ids are collected
+    private int[] ids(int after_id, int up_to, int limit) {
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[Math.min(size, limit)];
+            int count = 0;
+            for (int index = firstBlockAfter(after_id); index < blocks.size() && count < ids.length; index++) {
+                Block block = blocks.get(index);
+                if (block.first > up_to) {
+                    break;
+                }
+                count = block.decodeInto(ids, count, after_id, up_to);
+            }
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Index of the first block holding an id greater than after_id, or the block count if there is none
+    private int firstBlockAfter(int after_id) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blocks.get(middle).last <= after_id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Index of the block whose range covers the id, or the block it would be inserted into
+    private int blockFor(int message_id) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blocks.get(middle).last < message_id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Re-encode one block from ids[0, count); an empty block is dropped and an oversized one split in two
+    private void replace(int index, int[] ids, int count) {
+        if (count == 0) {
+            blocks.remove(index);
+        } else if (count > 2 * BLOCK_SIZE) {
+            blocks.set(index, Block.of(ids, BLOCK_SIZE));
+            blocks.add(index + 1, Block.of(Arrays.copyOfRange(ids, BLOCK_SIZE, count), count - BLOCK_SIZE));
+        } else {
+            blocks.set(index, Block.of(ids, count));
+        }
+    }
+
+    private static class Block {
+        int first;
+        int last;
+        int count;
+        byte[] bytes = new byte[16];
+        int length;
+
+        static Block of(int[] ids, int count) {
+            Block block = new Block();
+            block.first = ids[0];
+            block.last = ids[0];
+            block.count = 1;
+            for (int i = 1; i < count; i++) {
+                block.append(ids[i]);
+            }
+            return block;
+        }
+
+        // Store the gap from the previous id as a varint, 7 bits per byte
+        void append(int message_id) {
+            int delta = message_id - last;
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            last = message_id;
+            count++;
+        }
+
+        int[] decode() {
+            int[] ids = new int[count];
+            decodeInto(ids, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            return ids;
+        }
+
+        // Copy the ids in (after_id, up_to] into out from offset, stopping once out is full; returns the new offset
+        int decodeInto(int[] out, int offset, int after_id, int up_to) {
+            int id = first;
+            int position = 0;
+            while (id <= up_to) {
+                if (id > after_id) {
+                    out[offset++] = id;
+                    if (offset == out.length) {
+                        break;
+                    }
+                }
+                if (position == length) {
+                    break;
+                }
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Token bucket per caller for one route: up to burst requests at once, refilled at perSecond.
+ *
+ * Each bucket is a single AtomicLong holding the time at which it will be full again (the generic cell rate
+ * algorithm, which admits exactly what a token bucket admits). Taking a token is one compare-and-set on the
+ * caller's own bucket, so callers never wait on each other and nothing is locked. Buckets live in a Caffeine
+ * store that drops them once they have been idle long enough to be full again, so memory follows the active callers.
+ *
+ * Configured per route with -Dratelimit.<route>.perSecond and -Dratelimit.<route>.burst; perSecond=0 turns the
+ * route's limit off.
+ */
+public class RateLimiter {
+    // Upper bound on buckets kept in memory, overridable with -Dratelimit.maxKeys
+    private static final long MAX_KEYS = Long.getLong("ratelimit.maxKeys", 100_000);
+
+    private final String route;
+    private final double perSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Cache<String, AtomicLong> buckets;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(String route, double perSecond, int burst) {
+        this.route = route;
+        this.perSecond = perSecond;
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = perSecond > 0 ? (long) Math.ceil(1e9 / perSecond) : 0;
+        this.burstNanos = intervalNanos * this.burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_KEYS)
+                .expireAfterAccess(Duration.ofNanos(Math.max(burstNanos, 1_000_000_000L))) // Idle this long, the bucket is full anyway
+                .build();
+    }
+
+    /**
+     * @return the limiter for this route, read from -Dratelimit.<route>.perSecond and -Dratelimit.<route>.burst
+     */
+    public static RateLimiter forRoute(String route, double defaultPerSecond, int defaultBurst) {
+        String perSecond = System.getProperty("ratelimit." + route + ".perSecond");
+        return new RateLimiter(route,
+                perSecond == null ? defaultPerSecond : Double.parseDouble(perSecond),
+                Integer.getInteger("ratelimit." + route + ".burst", defaultBurst));
+    }
+
+    // Method to take one token from the caller's bucket.
+    // Returns 0 if the request may go ahead, otherwise the nanoseconds until the next token is available
+    public long tryAcquire(String key) {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return intervalNanos > 0;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public double getPerSecond() {
+        return perSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getBucketCount() {
+        return buckets.estimatedSize();
+    }
+}
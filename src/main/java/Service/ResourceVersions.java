@@ -0,0 +1,59 @@
+package Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version counters for ETags, bumped by every write to a message or to an account's timeline.
+ *
+ * Ids are hashed into a fixed array of counters, so memory stays constant and bumping or reading takes no lock.
+ * Two ids sharing a slot only cause an extra full response when either is written, never a stale 304.
+ * The tag also carries a random epoch picked at construction, so tags from before a restart never match.
+ * Each slot also keeps the System.nanoTime() of its last write, which tells a read how fresh its data must be.
+ */
+public class ResourceVersions {
+    private final long epoch = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    private final AtomicLongArray versions;
+    private final AtomicLongArray writtenAt;
+    private final int mask;
+
+    // slots is rounded up to a power of two
+    public ResourceVersions(int slots) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        versions = new AtomicLongArray(size);
+        writtenAt = new AtomicLongArray(size);
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            writtenAt.set(i, start); // Nothing written through this instance yet; earlier writes are older than this
+        }
+        mask = size - 1;
+    }
+
+    // Method to record when the resource was written, called after its write has returned and before any
+    // cached copy of it is dropped, so a reload knows how fresh its data must be
+    public void written(int id) {
+        writtenAt.accumulateAndGet(slot(id), System.nanoTime(), (previous, next) -> next - previous > 0 ? next : previous);
+    }
+
+    // Method to move the resource's ETag on, called once every cached copy of it has been dropped, so no
+    // reader can pair the new tag with the old body
+    public void bump(int id) {
+        versions.incrementAndGet(slot(id));
+    }
+
+    // System.nanoTime() of the last write of the resource (or of another sharing its slot), never before construction
+    public long lastWrite(int id) {
+        return writtenAt.get(slot(id));
+    }
+
+    // Weak ETag for the resource's current version. Read it before reading the data, so a concurrent write
+    // can only make the tag older than the body, which costs the client one extra download rather than a stale 304.
+    public String etag(int id) {
+        return "W/\"" + Long.toHexString(epoch) + "-" + Long.toHexString(versions.get(slot(id))) + "\"";
+    }
+
+    private int slot(int id) {
+        int h = id * 0x9E3779B9; // Spread sequential ids across the slots
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
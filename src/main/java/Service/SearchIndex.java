@@ -0,0 +1,241 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import Model.Message;
+
+/**
+ * In-memory inverted index over message_text: token -> compressed posting list of message_ids (see PostingList).
+ *
+ * The index holds no copy of the messages: the ids a search finds are read back through the lookup it was built
+ * with (the DAO, on the primary), one call per page of candidates, and checked against the stored text before
+ * they are returned, so a search running alongside a write never returns a message that does not match.
+ *
+ * Built once from the DAO when the service starts, then kept current by the service's write paths. An update only
+ * adds postings for the new text, since the old text is no longer known; postings the text no longer backs, and
+ * those of messages deleted under a racing update, are dropped by the first search that reads them. Searches do
+ * not lock the index as a whole: each posting list is read under its own read lock.
+ *
+ * Queries are ANDs of words and "quoted phrases"; tokens are maximal runs of letters and digits, lower-cased.
+ */
+public class SearchIndex {
+    private final ConcurrentMap<String, PostingList> postings = new ConcurrentHashMap<>();
+    private final Function<int[], List<Message>> lookup;
+    private final AtomicInteger messageCount = new AtomicInteger();
+    // Writes to the same message are applied one at a time; different messages go through different stripes
+    private final Object[] stripes = new Object[64];
+
+    // The lookup reads the stored messages among a set of ids, leaving out those with none; it must see every
+    // committed write
+    public SearchIndex(Function<int[], List<Message>> lookup) {
+        this.lookup = lookup;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    // Method to index a new message
+    public void add(Message message) {
+        synchronized (stripe(message.getMessage_id())) {
+            for (String token : new LinkedHashSet<>(tokenize(message.getMessage_text()))) {
+                postings.computeIfAbsent(token, t -> new PostingList()).add(message.getMessage_id());
+            }
+            messageCount.incrementAndGet();
+        }
+    }
+
+    // Method to re-index an updated message. Postings of words the new text dropped stay until a search prunes them
+    public void update(Message message) {
+        synchronized (stripe(message.getMessage_id())) {
+            for (String token : new LinkedHashSet<>(tokenize(message.getMessage_text()))) {
+                postings.computeIfAbsent(token, t -> new PostingList()).add(message.getMessage_id());
+            }
+        }
+    }
+
+    // Method to drop a deleted message, as it was when deleted, from the index
+    public void remove(Message message) {
+        synchronized (stripe(message.getMessage_id())) {
+            removePostings(message.getMessage_id(), new LinkedHashSet<>(tokenize(message.getMessage_text())));
+            messageCount.decrementAndGet();
+        }
+    }
+
+    public int getMessageCount() {
+        return messageCount.get();
+    }
+
+    public int getTokenCount() {
+        return postings.size();
+    }
+
+    /**
+     * Messages matching every word and phrase of the query, by ascending message_id, after after_id.
+     * Returns up to limit messages; an empty list if the query has no tokens.
+     */
+    public List<Message> search(String query, int after_id, int limit) {
+        List<List<String>> phrases = parse(query);
+        Set<String> terms = new LinkedHashSet<>();
+        for (List<String> phrase : phrases) {
+            terms.addAll(phrase);
+        }
+        List<Message> results = new ArrayList<>();
+        if (terms.isEmpty()) {
+            return results;
+        }
+
+        // Intersect the posting lists, shortest first, so the candidate set only shrinks
+        List<PostingList> lists = new ArrayList<>();
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            if (list == null) {
+                return results;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+
+        // Walk the shortest list limit ids at a time and intersect each page with the same id range of the others,
+        // so no list is decoded past the ids a page needs. Each page's matches are read back with one lookup.
+        int cursor = after_id;
+        while (results.size() < limit) {
+            int[] candidates = lists.get(0).idsAfter(cursor, limit);
+            if (candidates.length == 0) {
+                break;
+            }
+            int last = candidates[candidates.length - 1];
+            for (int i = 1; i < lists.size() && candidates.length > 0; i++) {
+                candidates = intersect(candidates, lists.get(i).idsBetween(cursor, last));
+            }
+            cursor = last;
+
+            Map<Integer, Message> stored = candidates.length == 0 ? Map.of() : byId(lookup.apply(candidates));
+            for (int message_id : candidates) {
+                Message message = stored.get(message_id);
+                List<String> tokens = message == null ? List.of() : tokenize(message.getMessage_text());
+                if (!tokens.containsAll(terms)) {
+                    prune(message_id, terms);
+                } else if (matches(tokens, phrases)) {
+                    results.add(message);
+                    if (results.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // Drop the message's postings for the given terms that its stored text no longer backs. The text is read
+    // again under the message's stripe, so a write indexed in the meantime is never undone.
+    private void prune(int message_id, Set<String> terms) {
+        synchronized (stripe(message_id)) {
+            Message current = byId(lookup.apply(new int[] { message_id })).get(message_id);
+            Set<String> stale = new LinkedHashSet<>(terms);
+            if (current != null) {
+                stale.removeAll(tokenize(current.getMessage_text()));
+            }
+            removePostings(message_id, stale);
+        }
+    }
+
+    private static Map<Integer, Message> byId(List<Message> messages) {
+        Map<Integer, Message> byId = new HashMap<>();
+        for (Message message : messages) {
+            byId.put(message.getMessage_id(), message);
+        }
+        return byId;
+    }
+
+    private void removePostings(int message_id, Set<String> tokens) {
+        for (String token : tokens) {
+            PostingList list = postings.get(token);
+            if (list != null) {
+                list.remove(message_id);
+            }
+        }
+    }
+
+    // Every phrase must appear as consecutive tokens; single words are one-token phrases
+    private static boolean matches(List<String> tokens, List<List<String>> phrases) {
+        for (List<String> phrase : phrases) {
+            if (phrase.isEmpty()) {
+                continue;
+            }
+            if (phrase.size() == 1 ? !tokens.contains(phrase.get(0)) : Collections.indexOfSubList(tokens, phrase) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    // Split a query into phrases: each "quoted phrase" is one, every other word is its own
+    static List<List<String>> parse(String query) {
+        List<List<String>> phrases = new ArrayList<>();
+        if (query == null) {
+            return phrases;
+        }
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 1) { // Inside quotes
+                phrases.add(tokenize(parts[i]));
+            } else {
+                for (String token : tokenize(parts[i])) {
+                    phrases.add(List.of(token));
+                }
+            }
+        }
+        return phrases;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private Object stripe(int message_id) {
+        return stripes[(message_id & 0x7FFFFFFF) % stripes.length];
+    }
+}
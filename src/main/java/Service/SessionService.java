@@ -0,0 +1,137 @@
+package Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Issues and validates session tokens, so only login pays for the password check.
+ *
+ * A token is base64url(account_id, expiry, nonce) "." base64url(HMAC-SHA256 of that payload). The signature and
+ * expiry are checked first, so forged or stale tokens are rejected without a lookup; live sessions are then found in
+ * an in-memory Caffeine store that expires them after the TTL and lets logout revoke them. Nothing touches the DB.
+ */
+public class SessionService {
+    // Lifetime of a session token, overridable with -Dsessions.ttlSeconds
+    private static final long TTL_SECONDS = Long.getLong("sessions.ttlSeconds", 3600);
+    // Upper bound on live sessions kept in memory, overridable with -Dsessions.maxSessions
+    private static final long MAX_SESSIONS = Long.getLong("sessions.maxSessions", 100_000);
+    private static final String HMAC = "HmacSHA256";
+    private static final int PAYLOAD_BYTES = Integer.BYTES + Long.BYTES + 16;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final SecretKeySpec key;
+    private final Cache<String, Integer> sessions;
+    // System.nanoTime() of each session's start or last message write, so its reads can go where that is visible
+    private final Cache<String, Long> lastWrites;
+
+    public SessionService() {
+        this(secret());
+    }
+
+    public SessionService(byte[] secret) {
+        key = new SecretKeySpec(secret, HMAC);
+        sessions = Caffeine.newBuilder()
+                .maximumSize(MAX_SESSIONS)
+                .expireAfterWrite(Duration.ofSeconds(TTL_SECONDS))
+                .build();
+        lastWrites = Caffeine.newBuilder()
+                .maximumSize(MAX_SESSIONS)
+                .expireAfterWrite(Duration.ofSeconds(TTL_SECONDS))
+                .build();
+    }
+
+    // Method to start a session for the account and return its signed token
+    public String createSession(int account_id) {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        long expiresAt = System.currentTimeMillis() + TTL_SECONDS * 1000;
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES).putInt(account_id).putLong(expiresAt).put(nonce).array();
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String token = encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+        sessions.put(token, account_id);
+        lastWrites.put(token, System.nanoTime()); // A new session sees everything committed before it, its own registration included
+        return token;
+    }
+
+    // Method to resolve a token to its account_id, or null if it is forged, expired or revoked
+    public Integer getAccountId(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(signature, sign(payload))) {
+                return null;
+            }
+            if (ByteBuffer.wrap(payload, Integer.BYTES, Long.BYTES).getLong() < System.currentTimeMillis()) {
+                return null;
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return sessions.getIfPresent(token);
+    }
+
+    // Method to end a session before it expires
+    public void invalidate(String token) {
+        if (token != null) {
+            sessions.invalidate(token);
+            lastWrites.invalidate(token);
+        }
+    }
+
+    // Method to note that the session has just written, called after the write returned
+    public void recordWrite(String token) {
+        if (token != null && sessions.getIfPresent(token) != null) {
+            lastWrites.put(token, System.nanoTime());
+        }
+    }
+
+    // System.nanoTime() of the session's last recorded write or of its start, null for an unknown token
+    public Long getLastWrite(String token) {
+        return token == null ? null : lastWrites.getIfPresent(token);
+    }
+
+    public long getSessionCount() {
+        return sessions.estimatedSize();
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC + " is not available", e);
+        }
+    }
+
+    // Signing key from -Dsessions.secret, otherwise random per process (sessions then do not survive a restart)
+    private static byte[] secret() {
+        String configured = System.getProperty("sessions.secret");
+        if (configured != null && !configured.isEmpty()) {
+            return configured.getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        return secret;
+    }
+}
@@ -1,27 +1,40 @@
 package Util;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.FileReader;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
 /**
  * The ConnectionUtil class will be utilized to create an active connection to
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are handed out by a bounded HikariCP pool. Callers must close
+ * the connection (try-with-resources) to return it to the pool.
+ *
+ * With -Dreplica.enabled=true there is a second pool for a read replica, kept up
+ * to date by ReplicaShipper. getConnection() always goes to the primary;
+ * getReadConnection() goes to the replica only inside a readAfter() call whose
+ * writes the replica already holds, and to the primary otherwise.
  */
 public class ConnectionUtil {
 
 	/**
 	 * url will represent our connection string. Since this is an in-memory db, we
-	 * will represent a file location to store the data
+	 * will represent a file location to store the data. Benchmarks point it elsewhere with -Ddb.url
 	 */
-	private static String url = "jdbc:h2:./h2/db;";
+	private static String url = System.getProperty("db.url", "jdbc:h2:./h2/db;");
 	/**
 	 * Default username for connecting to h2
 	 */
@@ -32,43 +45,211 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * Pool sizing and timeouts. Each value can be overridden with a system property,
+	 * eg -Dpool.maxSize=20
+	 */
+	private static int minIdle = Integer.getInteger("pool.minIdle", 2);
+	private static int maxSize = Integer.getInteger("pool.maxSize", 10);
+	private static long acquireTimeoutMs = Long.getLong("pool.acquireTimeoutMs", 5000);
+	private static long idleTimeoutMs = Long.getLong("pool.idleTimeoutMs", 60000);
+	private static long leakDetectionMs = Long.getLong("pool.leakDetectionMs", 10000);
+	/**
+	 * Most callers allowed to wait for a connection at once. With virtual threads there can be thousands of
+	 * concurrent requests; once this many are waiting and the pool is full and busy, getConnection fails fast
+	 * instead of queueing more work for h2.
+	 */
+	private static volatile int maxWaiting = Integer.getInteger("pool.maxWaiting", 1024);
+	/**
+	 * Callers inside getConnection (and getReplicaConnection, for the replica pool), waiting or not. Only once it
+	 * passes maxWaiting is the pool asked how many are actually waiting, so the common path does not read the pool's state.
+	 */
+	private static final AtomicInteger acquiring = new AtomicInteger();
+	private static final AtomicInteger replicaAcquiring = new AtomicInteger();
+
+	/**
+	 * Read replica, off by default. Its url defaults to the primary's with "-replica" added to the
+	 * database name, eg jdbc:h2:./h2/db-replica; and can be set with -Ddb.replicaUrl
+	 */
+	private static final boolean replicaEnabled = Boolean.getBoolean("replica.enabled");
+	private static String replicaUrl = System.getProperty("db.replicaUrl", replicaUrl(url));
+	private static HikariDataSource replicaPool;
+
+	/**
+	 * System.nanoTime() of the newest write the current thread's reads must see, set by readAfter()
+	 */
+	private static final ThreadLocal<Long> readAfter = new ThreadLocal<>();
+	private static final LongAdder replicaReads = Metrics.counter("db_reads_total", "Reads by the database that served them", "target=\"replica\"");
+	private static final LongAdder primaryReads = Metrics.counter("db_reads_total", "Reads by the database that served them", "target=\"primary\"");
+
+	/**
+	 * DataSource for pooling. Connections are reused once they are closed by the caller.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static HikariDataSource pool;
+
+	/**
+	 * Acquire latency counters, recorded around every getConnection call.
+	 */
+	private static final LongAdder acquireCount = new LongAdder();
+	private static final LongAdder acquireNanos = new LongAdder();
+	private static final AtomicLong maxAcquireNanos = new AtomicLong();
 
 	/**
 	 * static initialization block to establish credentials for DataSoure Pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		HikariConfig config = new HikariConfig();
+		config.setPoolName("social-media");
+		config.setJdbcUrl(url);
+		config.setUsername(username);
+		config.setPassword(password);
+		config.setMinimumIdle(minIdle);
+		config.setMaximumPoolSize(maxSize);
+		config.setConnectionTimeout(acquireTimeoutMs);
+		config.setIdleTimeout(idleTimeoutMs);
+		config.setLeakDetectionThreshold(leakDetectionMs);
+		config.setRegisterMbeans(true);
+		pool = new HikariDataSource(config);
+
+		if (replicaEnabled) {
+			HikariConfig replicaConfig = new HikariConfig();
+			config.copyStateTo(replicaConfig);
+			replicaConfig.setPoolName("social-media-replica");
+			replicaConfig.setJdbcUrl(replicaUrl);
+			replicaConfig.setRegisterMbeans(false);
+			replicaPool = new HikariDataSource(replicaConfig);
+		}
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * @return an active connection to the database, borrowed from the pool
+	 * @throws SQLException if no connection becomes available within the acquire timeout, or if the pool is
+	 *         full and busy and pool.maxWaiting callers are already waiting
 	 */
-	public static Connection getConnection() {
+	public static Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			return acquire(pool, acquiring);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			acquireCount.increment();
+			acquireNanos.add(elapsed);
+			maxAcquireNanos.accumulateAndGet(elapsed, Math::max);
+		}
+	}
+
+	// Borrow from the given pool, or fail at once if it is full and busy and pool.maxWaiting callers already wait
+	private static Connection acquire(HikariDataSource dataSource, AtomicInteger callers) throws SQLException {
 		try {
-			return pool.getConnection();
-		} catch (SQLException e) {
-			e.printStackTrace();
+			if (callers.incrementAndGet() > maxWaiting && waitersFull(dataSource)) {
+				throw new SQLTransientConnectionException("Too many callers waiting for a database connection");
+			}
+			return dataSource.getConnection();
+		} finally {
+			callers.decrementAndGet();
 		}
+	}
 
-		return null;
+	// The pool is at its maximum size, none of its connections is idle and pool.maxWaiting callers already wait
+	private static boolean waitersFull(HikariDataSource dataSource) {
+		HikariPoolMXBean bean = dataSource.getHikariPoolMXBean();
+		return bean.getTotalConnections() >= maxSize && bean.getIdleConnections() == 0
+				&& bean.getThreadsAwaitingConnection() >= maxWaiting;
+	}
+
+	/**
+	 * @return a connection for a read: the replica if it is enabled and holds every write the enclosing
+	 *         readAfter() call asked for, otherwise the primary (always the primary outside one)
+	 */
+	public static Connection getReadConnection() throws SQLException {
+		Long writtenAt = readAfter.get();
+		if (replicaPool != null && writtenAt != null && ReplicaShipper.isCaughtUpAsOf(writtenAt)) {
+			replicaReads.increment();
+			return getReplicaConnection();
+		}
+		primaryReads.increment();
+		return getConnection();
+	}
+
+	/**
+	 * Run read with the reads it makes on this thread allowed to use the replica, provided it holds every
+	 * write made before writtenAtNanos (a System.nanoTime()). Calls nest; the inner one can only
+	 * ask for newer data.
+	 *
+	 * @return what read returned
+	 */
+	public static <T, E extends Exception> T readAfter(long writtenAtNanos, Read<T, E> read) throws E {
+		Long outer = readAfter.get();
+		readAfter.set(outer == null || writtenAtNanos - outer > 0 ? writtenAtNanos : outer);
+		try {
+			return read.get();
+		} finally {
+			if (outer == null) {
+				readAfter.remove();
+			} else {
+				readAfter.set(outer);
+			}
+		}
+	}
+
+	/**
+	 * The reads run by readAfter(); may throw a checked exception, which readAfter() passes on
+	 */
+	public interface Read<T, E extends Exception> {
+		T get() throws E;
+	}
+
+	public static boolean isReplicaEnabled() {
+		return replicaEnabled;
+	}
+
+	/**
+	 * @return a connection to the replica whatever it holds, for ReplicaShipper; shed like getConnection()
+	 */
+	public static Connection getReplicaConnection() throws SQLException {
+		return acquire(replicaPool, replicaAcquiring);
+	}
+
+	/**
+	 * @return a snapshot of the pool state and acquire latency, for sizing the pool
+	 */
+	public static PoolStats getPoolStats() {
+		HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+		return new PoolStats(bean.getActiveConnections(), bean.getIdleConnections(),
+				bean.getThreadsAwaitingConnection(), bean.getTotalConnections(), maxSize,
+				acquireCount.sum(), acquireNanos.sum(), maxAcquireNanos.get());
+	}
+
+	/**
+	 * Change pool.maxWaiting at runtime, for testing the fail-fast path
+	 */
+	public static void setMaxWaiting(int callers) {
+		maxWaiting = callers;
 	}
 
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
 	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * file in resources, then apply the schema migrations on top of it, recreate
+	 * the message shards if there are several, and copy the result to the replica
+	 * if there is one. This will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
-			e.printStackTrace();
+		synchronized (ReplicaShipper.class) { // No replica poll runs while the tables are dropped and recreated
+			try (Connection connection = getConnection();
+					FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql")) {
+				RunScript.execute(connection, sqlReader);
+				MigrationRunner.migrate(connection);
+				ShardRouter.reset();
+				ReplicaShipper.reset();
+			} catch (SQLException | IOException e) {
+				e.printStackTrace();
+			}
 		}
 	}
+
+	// The database name is the url up to the first ';'
+	private static String replicaUrl(String url) {
+		int end = url.indexOf(';');
+		return end < 0 ? url + "-replica" : url.substring(0, end) + "-replica" + url.substring(end);
+	}
 }
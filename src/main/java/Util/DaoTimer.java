@@ -0,0 +1,47 @@
+package Util;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times one DAO method and counts the rows it returned and the SQL errors it hit.
+ * Only calls that return are timed; a failed call is counted as an error and rethrown by the DAO.
+ * Create one per method as a static field; record() and error() take no lock and do not allocate.
+ */
+public class DaoTimer {
+	private static final Logger logger = LoggerFactory.getLogger(DaoTimer.class);
+
+	private final String method;
+	private final LatencyHistogram latency;
+	private final LongAdder rows;
+	private final LongAdder errors;
+
+	public DaoTimer(String method) {
+		String labels = "method=\"" + method + "\"";
+		this.method = method;
+		this.latency = Metrics.histogram("dao_query_duration_seconds", "Latency of DAO methods", labels);
+		this.rows = Metrics.counter("dao_rows_total", "Rows returned or written by DAO methods", labels);
+		this.errors = Metrics.counter("dao_errors_total", "SQL errors caught by DAO methods", labels);
+	}
+
+	/**
+	 * Record a finished call that started at startNanos (from System.nanoTime()) and returned rowCount rows.
+	 */
+	public void record(long startNanos, int rowCount) {
+		latency.recordNanos(System.nanoTime() - startNanos);
+		rows.add(rowCount);
+	}
+
+	/**
+	 * Count and log a SQL error caught by the DAO method.
+	 * @return the error wrapped for the DAO method to throw
+	 */
+	public DataAccessException error(SQLException e) {
+		errors.increment();
+		logger.warn("{} failed: {}", method, e.getMessage());
+		return new DataAccessException(method, e);
+	}
+}
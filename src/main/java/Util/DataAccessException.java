@@ -0,0 +1,45 @@
+package Util;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Unchecked wrapper for a SQLException raised inside a DAO method. DAOs return null or an empty list only when
+ * nothing matched; when the database could not answer they throw this, and the controller responds 500, or 503 if
+ * no connection was available (the client may retry).
+ */
+public class DataAccessException extends RuntimeException {
+
+	public DataAccessException(String method, SQLException cause) {
+		super(method + " failed: " + cause.getMessage(), cause);
+	}
+
+	@Override
+	public synchronized SQLException getCause() {
+		return (SQLException) super.getCause();
+	}
+
+	/**
+	 * @return true if the pool had no connection to hand out (timed out or shed), so a retry may succeed
+	 */
+	public boolean isTransient() {
+		return getCause() instanceof SQLTransientConnectionException;
+	}
+
+	/**
+	 * @return true if the statement broke a constraint (SQLState class 23), eg a duplicate username or an unknown
+	 *         posted_by; DAOs report these as invalid input rather than as a failure
+	 */
+	public static boolean isConstraintViolation(SQLException e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SQLException) {
+				for (SQLException next = (SQLException) cause; next != null; next = next.getNextException()) {
+					if (next.getSQLState() != null && next.getSQLState().startsWith("23")) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,38 @@
+package Util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * A latency distribution with a fixed range (1 microsecond to 60 seconds, two significant digits).
+ * Recording is wait-free and does not allocate; readers take a snapshot when /metrics is scraped.
+ */
+public class LatencyHistogram {
+	private static final long HIGHEST_MICROS = TimeUnit.SECONDS.toMicros(60);
+
+	private final ConcurrentHistogram histogram = new ConcurrentHistogram(1, HIGHEST_MICROS, 2);
+	private final LongAdder sumNanos = new LongAdder();
+
+	/**
+	 * Record one observation, given as elapsed nanoseconds.
+	 */
+	public void recordNanos(long nanos) {
+		long micros = Math.max(1, Math.min(HIGHEST_MICROS, nanos / 1000));
+		histogram.recordValue(micros);
+		sumNanos.add(nanos);
+	}
+
+	/**
+	 * @return a consistent copy of the distribution, in microseconds
+	 */
+	public Histogram snapshot() {
+		return histogram.copy();
+	}
+
+	public double getSumSeconds() {
+		return sumNanos.sum() / 1e9;
+	}
+}
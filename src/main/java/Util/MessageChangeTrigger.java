@@ -0,0 +1,33 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.api.Trigger;
+
+/**
+ * h2 row trigger on the primary's message table, installed by ReplicaShipper. Every insert, update and delete
+ * appends the message_id to message_changes in the same transaction, so the change log holds exactly the
+ * committed writes, including writes made outside the DAOs. Rows are numbered when the write is made, not when
+ * it commits, so seq order is not commit order; ReplicaShipper replays ids rather than relying on it.
+ * Each seq is also handed to ReplicaShipper, which tracks the replica's freshness by the writes still unshipped.
+ */
+public class MessageChangeTrigger implements Trigger {
+
+	@Override
+	public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+		Object[] row = newRow != null ? newRow : oldRow;
+		try (PreparedStatement preparedStatement = connection.prepareStatement("insert into message_changes (message_id) values (?)",
+				Statement.RETURN_GENERATED_KEYS)) {
+			preparedStatement.setObject(1, row[0]); // message_id is the first column
+			preparedStatement.executeUpdate();
+			try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+				keys.next();
+				ReplicaShipper.logged(keys.getLong(1));
+			}
+		}
+	}
+}
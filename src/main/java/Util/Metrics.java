@@ -0,0 +1,120 @@
+package Util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Process-wide metrics registry, exported in the Prometheus text format by GET /metrics.
+ *
+ * Series are registered once (usually into a static field) and then updated directly, so recording never
+ * goes through this class: histograms are wait-free and counters are LongAdders, with no shared lock.
+ * Labels are passed pre-rendered, eg method="GET",route="/messages".
+ */
+public class Metrics {
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	private static final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+	/**
+	 * @return the latency summary for this name and label set, created on first use
+	 */
+	public static LatencyHistogram histogram(String name, String help, String labels) {
+		return (LatencyHistogram) family(name, help, "summary").series.computeIfAbsent(labels, l -> new LatencyHistogram());
+	}
+
+	/**
+	 * @return the counter for this name and label set, created on first use
+	 */
+	public static LongAdder counter(String name, String help, String labels) {
+		return (LongAdder) family(name, help, "counter").series.computeIfAbsent(labels, l -> new LongAdder());
+	}
+
+	/**
+	 * Register a gauge read at scrape time. Registering the same name and labels again replaces the supplier.
+	 */
+	public static void gauge(String name, String help, String labels, DoubleSupplier value) {
+		family(name, help, "gauge").series.put(labels, value);
+	}
+
+	/**
+	 * Register a counter whose value is read at scrape time from a component that already counts, eg a cache.
+	 */
+	public static void counterFunction(String name, String help, String labels, DoubleSupplier value) {
+		family(name, help, "counter").series.put(labels, value);
+	}
+
+	private static Family family(String name, String help, String type) {
+		Family family = families.get(name);
+		if (family == null) {
+			family = families.computeIfAbsent(name, n -> new Family(help, type));
+		}
+		return family;
+	}
+
+	/**
+	 * @return every registered series in the Prometheus text exposition format
+	 */
+	public static String scrape() {
+		StringBuilder out = new StringBuilder(4096);
+		for (Map.Entry<String, Family> entry : families.entrySet()) {
+			String name = entry.getKey();
+			Family family = entry.getValue();
+			out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+			out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+			for (Map.Entry<String, Object> series : family.series.entrySet()) {
+				writeSeries(out, name, series.getKey(), series.getValue());
+			}
+		}
+		return out.toString();
+	}
+
+	private static void writeSeries(StringBuilder out, String name, String labels, Object series) {
+		if (series instanceof LatencyHistogram) {
+			LatencyHistogram latency = (LatencyHistogram) series;
+			Histogram snapshot = latency.snapshot();
+			String separator = labels.isEmpty() ? "" : ",";
+			for (double quantile : QUANTILES) {
+				double seconds = snapshot.getTotalCount() == 0 ? 0 : snapshot.getValueAtPercentile(quantile * 100) / 1e6;
+				out.append(name).append('{').append(labels).append(separator).append("quantile=\"").append(quantile).append("\"} ")
+						.append(seconds).append('\n');
+			}
+			line(out, name + "_sum", labels, latency.getSumSeconds());
+			line(out, name + "_count", labels, snapshot.getTotalCount());
+		} else if (series instanceof LongAdder) {
+			line(out, name, labels, ((LongAdder) series).sum());
+		} else {
+			line(out, name, labels, ((DoubleSupplier) series).getAsDouble());
+		}
+	}
+
+	private static void line(StringBuilder out, String name, String labels, double value) {
+		out.append(name);
+		if (!labels.isEmpty()) {
+			out.append('{').append(labels).append('}');
+		}
+		out.append(' ');
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	private static class Family {
+		final String help;
+		final String type;
+		final ConcurrentMap<String, Object> series = new ConcurrentHashMap<>();
+
+		Family(String help, String type) {
+			this.help = help;
+			this.type = type;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.h2.tools.RunScript;
+
+/**
+ * The MigrationRunner applies the numbered schema scripts in resources/db/migration, each exactly once,
+ * and records them in the schema_version table. Unlike resetTestDatabase it never drops anything, so it
+ * is safe to run on every startup.
+ */
+public class MigrationRunner {
+
+	/**
+	 * Migration scripts in the order they must be applied. Scripts are named V<version>__<description>.sql;
+	 * append new ones to the end and never edit one that has shipped.
+	 */
+	private static final String[] MIGRATIONS = {
+			"V1__create_tables.sql",
+			"V2__message_indexes.sql",
+			"V3__drop_memory_mirror_trigger.sql",
+	};
+
+	private static final String LOCATION = "db/migration/";
+
+	/**
+	 * Apply every pending migration to the database behind ConnectionUtil.
+	 * Throws DataAccessException, stopping startup, if a migration fails or an applied one was changed.
+	 */
+	public static void migrate() {
+		try (Connection connection = ConnectionUtil.getConnection()) {
+			migrate(connection);
+		} catch (SQLException e) {
+			throw new DataAccessException("migrate", e);
+		}
+	}
+
+	/**
+	 * Apply every pending migration on the given connection.
+	 *
+	 * H2 commits each DDL statement on its own, so a script that fails part way keeps the statements before
+	 * the failure and is not recorded as applied. Scripts therefore use "if not exists" throughout, so that
+	 * running the fixed script again completes it.
+	 * @return the number of migrations applied
+	 */
+	public static synchronized int migrate(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table if not exists schema_version (" +
+					"version int primary key, " +
+					"script varchar(255), " +
+					"checksum bigint, " +
+					"applied_at timestamp default current_timestamp)");
+		}
+
+		Map<Integer, Long> applied = new HashMap<>();
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("select version, checksum from schema_version")) {
+			while (resultSet.next()) {
+				applied.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+			}
+		}
+
+		int count = 0;
+		for (String script : MIGRATIONS) {
+			int version = Integer.parseInt(script.substring(1, script.indexOf("__")));
+			String sql = readScript(script);
+			long checksum = checksum(sql);
+
+			if (applied.containsKey(version)) {
+				if (applied.get(version) != checksum) {
+					throw new SQLException("Migration " + script + " was changed after it was applied");
+				}
+				continue;
+			}
+
+			try {
+				RunScript.execute(connection, new StringReader(sql));
+			} catch (SQLException e) {
+				throw new SQLException("Migration " + script + " failed: " + e.getMessage(), e);
+			}
+			try (PreparedStatement preparedStatement = connection.prepareStatement(
+					"insert into schema_version (version, script, checksum) values (?, ?, ?)")) {
+				preparedStatement.setInt(1, version);
+				preparedStatement.setString(2, script);
+				preparedStatement.setLong(3, checksum);
+				preparedStatement.executeUpdate();
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Bring a database that holds messages but no accounts (a message shard or the read replica) to the current
+	 * schema: every migration, then without the message table's foreign keys, since its account table is never filled.
+	 */
+	public static void migrateMessagesOnly(Connection connection) throws SQLException {
+		migrate(connection);
+		List<String> constraints = new ArrayList<>();
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("select constraint_name from information_schema.table_constraints "
+						+ "where table_name = 'MESSAGE' and constraint_type = 'FOREIGN KEY'")) {
+			while (resultSet.next()) {
+				constraints.add(resultSet.getString(1));
+			}
+		}
+		for (String constraint : constraints) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("alter table message drop constraint \"" + constraint + "\"");
+			}
+		}
+	}
+
+	private static String readScript(String script) throws SQLException {
+		try (InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(LOCATION + script)) {
+			if (in == null) {
+				throw new SQLException("Missing migration script " + LOCATION + script);
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new SQLException("Could not read migration script " + script, e);
+		}
+	}
+
+	private static long checksum(String sql) {
+		CRC32 crc = new CRC32();
+		crc.update(sql.getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+}
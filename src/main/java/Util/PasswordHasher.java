@@ -0,0 +1,90 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashes, stored as pbkdf2-sha256$iterations$salt$hash.
+ *
+ * The cost is tunable with -Dpasswords.iterations; each hash keeps the iteration count it was made with, so raising
+ * the cost does not lock anyone out and older hashes are upgraded at their next login (see needsRehash).
+ * Rows written before passwords were hashed hold the plain password, which verify still accepts.
+ */
+public class PasswordHasher {
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final String PREFIX = "pbkdf2-sha256$";
+	private static final int ITERATIONS = Integer.getInteger("passwords.iterations", 210_000);
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+
+	private static final SecureRandom random = new SecureRandom();
+
+	/**
+	 * @return a new salted hash of the password at the configured cost
+	 */
+	public static String hash(String password) {
+		byte[] salt = new byte[SALT_BYTES];
+		random.nextBytes(salt);
+		Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+		return PREFIX + ITERATIONS + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(pbkdf2(password, salt, ITERATIONS));
+	}
+
+	/**
+	 * @return true if the password matches the stored hash, compared in constant time
+	 */
+	public static boolean verify(String password, String stored) {
+		if (password == null || stored == null) {
+			return false;
+		}
+		if (!isHashed(stored)) { // Legacy row with the plain password
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+		}
+		String[] parts = stored.split("\\$");
+		if (parts.length != 4) {
+			return false;
+		}
+		try {
+			int iterations = Integer.parseInt(parts[1]);
+			byte[] salt = Base64.getDecoder().decode(parts[2]);
+			byte[] expected = Base64.getDecoder().decode(parts[3]);
+			return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if the stored value is a plain password or was hashed at a lower cost than the configured one
+	 */
+	public static boolean needsRehash(String stored) {
+		if (!isHashed(stored)) {
+			return true;
+		}
+		String[] parts = stored.split("\\$");
+		try {
+			return parts.length != 4 || Integer.parseInt(parts[1]) < ITERATIONS;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private static boolean isHashed(String stored) {
+		return stored.startsWith(PREFIX);
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the connection pool, returned by ConnectionUtil.getPoolStats().
+ */
+public class PoolStats {
+	private final int active;
+	private final int idle;
+	private final int waiting;
+	private final int total;
+	private final int maxSize;
+	private final long acquireCount;
+	private final long acquireNanos;
+	private final long maxAcquireNanos;
+
+	public PoolStats(int active, int idle, int waiting, int total, int maxSize,
+			long acquireCount, long acquireNanos, long maxAcquireNanos) {
+		this.active = active;
+		this.idle = idle;
+		this.waiting = waiting;
+		this.total = total;
+		this.maxSize = maxSize;
+		this.acquireCount = acquireCount;
+		this.acquireNanos = acquireNanos;
+		this.maxAcquireNanos = maxAcquireNanos;
+	}
+
+	// Connections currently borrowed by callers
+	public int getActive() {
+		return active;
+	}
+
+	// Connections open and sitting in the pool
+	public int getIdle() {
+		return idle;
+	}
+
+	// Threads blocked waiting for a connection
+	public int getWaiting() {
+		return waiting;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getAcquireCount() {
+		return acquireCount;
+	}
+
+	public long getAcquireNanos() {
+		return acquireNanos;
+	}
+
+	public double getAvgAcquireMicros() {
+		return acquireCount == 0 ? 0 : acquireNanos / 1000.0 / acquireCount;
+	}
+
+	public double getMaxAcquireMicros() {
+		return maxAcquireNanos / 1000.0;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolStats{" +
+				"active=" + active +
+				", idle=" + idle +
+				", waiting=" + waiting +
+				", total=" + total +
+				", maxSize=" + maxSize +
+				", acquireCount=" + acquireCount +
+				", avgAcquireMicros=" + getAvgAcquireMicros() +
+				", maxAcquireMicros=" + getMaxAcquireMicros() +
+				'}';
+	}
+}
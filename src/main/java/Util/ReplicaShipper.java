@@ -0,0 +1,311 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The ReplicaShipper keeps the read replica's message table up to date from the primary, asynchronously.
+ *
+ * A trigger (MessageChangeTrigger) logs the id of every changed message on the primary. A background thread
+ * polls that log, reads the current rows for the logged ids from the primary and merges them into the replica
+ * (deleting the ids that are gone), then deletes exactly the log rows it shipped. There is no high-water mark:
+ * a transaction can commit after one with a later seq, and its log row is simply picked up by the next poll.
+ * Replaying an id is idempotent, so the initial copy and the log may overlap.
+ *
+ * Freshness is tracked per primary write: the trigger also notes each log row's seq with the time of its write,
+ * and the note is dropped once that row has been shipped. ConnectionUtil only sends a read to the replica when
+ * no write made before the time the reader gives is still unshipped. A write that is rolled back leaves a note
+ * with no log row; a poll drops such notes once it has drained the log with no other transaction open, since
+ * every older write has then either been shipped or undone.
+ *
+ * Writes are only noted while the trigger is installed. A poll that finds it gone (eg the message table was
+ * dropped and recreated) stops sending reads to the replica and copies the primary again.
+ * Tuned with -Dreplica.pollMs (default 10) and -Dreplica.batchSize (default 1000).
+ */
+public class ReplicaShipper {
+
+	private static final long POLL_MS = Long.getLong("replica.pollMs", 10);
+	private static final int BATCH_SIZE = Integer.getInteger("replica.batchSize", 1000);
+
+	private static final Logger logger = LoggerFactory.getLogger(ReplicaShipper.class);
+	private static final String TRIGGER = "MESSAGE_CHANGES_TRIGGER";
+
+	private static final LongAdder shipped = Metrics.counter("replica_changes_shipped_total", "Message changes applied to the read replica", "");
+	private static final LongAdder errors = Metrics.counter("replica_ship_errors_total", "Failed polls of the replica change log", "");
+
+	/**
+	 * Seq -> System.nanoTime() of every logged write that is not on the replica yet, oldest first; guarded by itself
+	 */
+	private static final Map<Long, Long> unshipped = new LinkedHashMap<>();
+	/**
+	 * System.nanoTime() of the oldest write in unshipped, null when every logged write has been shipped
+	 */
+	private static volatile Long oldestUnshipped;
+	/**
+	 * Whether the trigger is installed and the replica was copied, so every write since is noted; false until
+	 * the first copy, so no read goes to the replica before it
+	 */
+	private static volatile boolean tracking;
+	private static volatile boolean failing;
+	private static Thread shipper;
+
+	/**
+	 * Install the change log, copy the primary's messages to the replica and start shipping. Safe to call again.
+	 * Without a replica, removes a change log left by an earlier run so it stops growing.
+	 */
+	public static synchronized void start() {
+		if (!ConnectionUtil.isReplicaEnabled()) {
+			try (Connection primary = ConnectionUtil.getConnection();
+					Statement statement = primary.createStatement()) {
+				statement.execute("drop trigger if exists message_changes_trigger");
+				statement.execute("drop table if exists message_changes");
+			} catch (SQLException e) {
+				errors.increment();
+				logger.warn("Could not remove the replica change log", e);
+			}
+			return;
+		}
+		if (shipper != null) {
+			return;
+		}
+		if (ShardRouter.getShardCount() > 1) {
+			throw new IllegalStateException("The read replica needs a single message shard (-Dmessages.shards=1)");
+		}
+		try {
+			resync();
+		} catch (SQLException e) {
+			throw new IllegalStateException("Could not start the read replica", e);
+		}
+		shipper = new Thread(ReplicaShipper::run, "replica-shipper");
+		shipper.setDaemon(true);
+		shipper.start();
+	}
+
+	/**
+	 * Copy the primary again after resetTestDatabase has recreated it (which also dropped the trigger).
+	 */
+	static synchronized void reset() throws SQLException {
+		if (!ConnectionUtil.isReplicaEnabled()) {
+			return;
+		}
+		if (shipper == null) {
+			start();
+		} else {
+			resync();
+		}
+	}
+
+	/**
+	 * @return true if the replica holds every write made before the given System.nanoTime()
+	 */
+	public static boolean isCaughtUpAsOf(long nanos) {
+		Long oldest = oldestUnshipped;
+		return tracking && (oldest == null || oldest - nanos > 0);
+	}
+
+	/**
+	 * @return seconds since the oldest write the replica does not hold yet was made, 0 when it holds them all,
+	 *         for the lag gauge
+	 */
+	public static double getLagSeconds() {
+		Long oldest = oldestUnshipped;
+		if (!tracking) {
+			return Double.NaN;
+		}
+		return oldest == null ? 0 : (System.nanoTime() - oldest) / 1e9;
+	}
+
+	/**
+	 * Note a write just logged by MessageChangeTrigger, until the poll that ships it
+	 */
+	static void logged(long seq) {
+		synchronized (unshipped) {
+			long now = System.nanoTime(); // Taken under the lock, so the notes stay in time order
+			unshipped.put(seq, now);
+			if (oldestUnshipped == null) {
+				oldestUnshipped = now;
+			}
+		}
+	}
+
+	// Drop the notes of the shipped seqs and, if given, of every write made before abandonedBefore (rolled back)
+	private static void shipped(List<Long> seqs, Long abandonedBefore) {
+		synchronized (unshipped) {
+			for (long seq : seqs) {
+				unshipped.remove(seq);
+			}
+			if (abandonedBefore != null) {
+				Iterator<Long> writtenAt = unshipped.values().iterator();
+				while (writtenAt.hasNext() && writtenAt.next() - abandonedBefore < 0) {
+					writtenAt.remove();
+				}
+			}
+			oldestUnshipped = unshipped.isEmpty() ? null : unshipped.values().iterator().next();
+		}
+	}
+
+	// Install the trigger before copying every message, so a write made during the copy is also in the log
+	private static void resync() throws SQLException {
+		tracking = false;
+		try (Connection primary = ConnectionUtil.getConnection();
+				Connection replica = ConnectionUtil.getReplicaConnection()) {
+			try (Statement statement = primary.createStatement()) {
+				statement.execute("create table if not exists message_changes (seq bigint auto_increment primary key, message_id int)");
+				statement.execute("create trigger if not exists message_changes_trigger after insert, update, delete on message " +
+						"for each row call '" + MessageChangeTrigger.class.getName() + "'");
+			}
+			MigrationRunner.migrateMessagesOnly(replica);
+			try (Statement statement = replica.createStatement()) {
+				statement.execute("truncate table message");
+			}
+			replica.setAutoCommit(false);
+			try (Statement statement = primary.createStatement();
+					ResultSet resultSet = statement.executeQuery("select * from message");
+					PreparedStatement merge = replica.prepareStatement(
+							"merge into message (message_id, posted_by, message_text, time_posted_epoch) key (message_id) values (?, ?, ?, ?)")) {
+				int pending = 0;
+				while (resultSet.next()) {
+					copyRow(resultSet, merge);
+					if (++pending == BATCH_SIZE) {
+						merge.executeBatch();
+						pending = 0;
+					}
+				}
+				merge.executeBatch();
+				replica.commit();
+			} finally {
+				replica.setAutoCommit(true); // The connection goes back to the pool, restore the default
+			}
+		}
+		tracking = true; // Writes before the copy are in it, or noted by the trigger if they were still open
+	}
+
+	private static void run() {
+		while (true) {
+			try {
+				boolean drained = poll();
+				failing = false;
+				if (drained) {
+					TimeUnit.MILLISECONDS.sleep(POLL_MS);
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (SQLException e) {
+				errors.increment();
+				if (!failing) {
+					logger.warn("Shipping to the read replica failed, retrying", e);
+					failing = true;
+				}
+				try {
+					TimeUnit.MILLISECONDS.sleep(POLL_MS);
+				} catch (InterruptedException interrupted) {
+					return;
+				}
+			}
+		}
+	}
+
+	// Ship one batch of logged ids; returns true if the log is now drained
+	private static synchronized boolean poll() throws SQLException {
+		long start = System.nanoTime();
+		Set<Integer> ids = new LinkedHashSet<>();
+		List<Long> seqs = new ArrayList<>();
+		boolean othersOpen;
+		try (Connection primary = ConnectionUtil.getConnection()) {
+			try (Statement statement = primary.createStatement();
+					ResultSet resultSet = statement.executeQuery("select " +
+							"(select count(*) from information_schema.triggers where trigger_name = '" + TRIGGER + "'), " +
+							"(select count(*) from information_schema.sessions where contains_uncommitted and session_id <> session_id())")) {
+				resultSet.next();
+				if (resultSet.getInt(1) == 0) {
+					if (tracking) {
+						logger.warn("The message change trigger is gone, copying the primary to the read replica again");
+					}
+					resync();
+					return true;
+				}
+				othersOpen = resultSet.getInt(2) > 0;
+			}
+
+			try (PreparedStatement preparedStatement = primary.prepareStatement(
+					"select seq, message_id from message_changes order by seq limit ?")) {
+				preparedStatement.setInt(1, BATCH_SIZE);
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					while (resultSet.next()) {
+						seqs.add(resultSet.getLong("seq"));
+						ids.add(resultSet.getInt("message_id"));
+					}
+				}
+			}
+
+			if (!ids.isEmpty()) {
+				apply(primary, ids);
+				shipped.add(seqs.size());
+				try (PreparedStatement preparedStatement = primary.prepareStatement("delete from message_changes where seq = any(?)")) {
+					preparedStatement.setObject(1, seqs.toArray(new Long[0]));
+					preparedStatement.executeUpdate();
+				}
+			}
+		}
+
+		boolean drained = seqs.size() < BATCH_SIZE;
+		// Drained with no other transaction open: a write made before the poll and still noted was rolled back
+		shipped(seqs, drained && !othersOpen ? start : null);
+		return drained;
+	}
+
+	// Bring the replica's copy of each id in line with the primary's current row, or delete it if there is none
+	private static void apply(Connection primary, Set<Integer> ids) throws SQLException {
+		try (Connection replica = ConnectionUtil.getReplicaConnection()) {
+			replica.setAutoCommit(false);
+			try (PreparedStatement select = primary.prepareStatement("select * from message where message_id = any(?)");
+					PreparedStatement merge = replica.prepareStatement(
+							"merge into message (message_id, posted_by, message_text, time_posted_epoch) key (message_id) values (?, ?, ?, ?)");
+					PreparedStatement delete = replica.prepareStatement("delete from message where message_id = ?")) {
+				select.setObject(1, ids.toArray(new Integer[0]));
+				Set<Integer> gone = new LinkedHashSet<>(ids);
+				try (ResultSet resultSet = select.executeQuery()) {
+					while (resultSet.next()) {
+						gone.remove(resultSet.getInt("message_id"));
+						copyRow(resultSet, merge);
+					}
+				}
+				for (int message_id : gone) {
+					delete.setInt(1, message_id);
+					delete.addBatch();
+				}
+				merge.executeBatch();
+				delete.executeBatch();
+				replica.commit();
+			} catch (SQLException e) {
+				replica.rollback();
+				throw e;
+			} finally {
+				replica.setAutoCommit(true); // The connection goes back to the pool, restore the default
+			}
+		}
+	}
+
+	private static void copyRow(ResultSet resultSet, PreparedStatement merge) throws SQLException {
+		merge.setInt(1, resultSet.getInt("message_id"));
+		merge.setInt(2, resultSet.getInt("posted_by"));
+		merge.setString(3, resultSet.getString("message_text"));
+		merge.setLong(4, resultSet.getLong("time_posted_epoch"));
+		merge.addBatch();
+	}
+}
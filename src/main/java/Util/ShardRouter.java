@@ -0,0 +1,281 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The ShardRouter partitions the message table across several h2 databases by posted_by, so every message of
+ * one user lives on one shard. Shard 0 is the database behind ConnectionUtil, which also keeps the accounts;
+ * shard k is a database next to it whose url has "-shard" + k added to the name, eg jdbc:h2:./h2/db-shard1;
+ *
+ * The number of shards is set with -Dmessages.shards (default 1, which is the plain single database).
+ * With several shards, message ids come from one counter in this process instead of each shard's identity
+ * column, so they stay unique and dense across shards; the counter starts above every id already stored.
+ * h2 file databases are opened by a single process, so no other writer can hand out the same ids. h2 does not
+ * move an identity column past ids inserted explicitly, so once the counter is started every shard's identity
+ * is restarted above it too, for inserts made without an id (eg after going back to a single shard).
+ *
+ * Ids are reserved before their insert commits, so a lower id can become visible after a higher one. Until
+ * its insert has committed or failed, a reserved id holds back getSettledMessageId(), and id-ordered pages
+ * only read up to that bound, so a keyset cursor never moves past a row that has yet to appear.
+ *
+ * The shard count in use is recorded on shard 0; when it changes, the messages are moved to their new
+ * shards at startup. Every shard gets its schema from MigrationRunner. Shards other than 0 then drop the
+ * message table's foreign key, as their account table stays empty; MessageService checks posted_by before
+ * writing.
+ */
+public class ShardRouter {
+
+	private static final int SHARDS = Math.max(1, Integer.getInteger("messages.shards", 1));
+	private static final String URL = System.getProperty("db.url", "jdbc:h2:./h2/db;");
+
+	/**
+	 * Pools for shards 1..N-1; shard 0 borrows from ConnectionUtil. Same sizing properties as ConnectionUtil.
+	 */
+	private static final HikariDataSource[] pools = new HikariDataSource[SHARDS];
+
+	/**
+	 * The last message id handed out, used when there is more than one shard.
+	 */
+	private static final AtomicInteger lastMessageId = new AtomicInteger();
+
+	/**
+	 * First id -> count of every reserved range whose insert has not finished yet, guarded by itself.
+	 */
+	private static final TreeMap<Integer, Integer> pendingIds = new TreeMap<>();
+
+	/**
+	 * Whether the shard tables, the layout and the id counter have been checked since startup. A single shard
+	 * is checked too, to take back the messages of an earlier, larger layout.
+	 */
+	private static volatile boolean prepared;
+
+	static {
+		for (int shard = 1; shard < SHARDS; shard++) {
+			HikariConfig config = new HikariConfig();
+			config.setPoolName("social-media-shard" + shard);
+			config.setJdbcUrl(shardUrl(URL, shard));
+			config.setUsername("sa");
+			config.setPassword("sa");
+			config.setMinimumIdle(Integer.getInteger("pool.minIdle", 2));
+			config.setMaximumPoolSize(Integer.getInteger("pool.maxSize", 10));
+			config.setConnectionTimeout(Long.getLong("pool.acquireTimeoutMs", 5000));
+			config.setIdleTimeout(Long.getLong("pool.idleTimeoutMs", 60000));
+			config.setLeakDetectionThreshold(Long.getLong("pool.leakDetectionMs", 10000));
+			pools[shard] = new HikariDataSource(config);
+		}
+	}
+
+	/**
+	 * @return the number of message shards
+	 */
+	public static int getShardCount() {
+		return SHARDS;
+	}
+
+	/**
+	 * @return the shard holding every message posted by this account
+	 */
+	public static int shardFor(int posted_by) {
+		int h = posted_by * 0x9E3779B9; // Spread sequential account ids across the shards
+		return Math.floorMod(h ^ (h >>> 16), SHARDS);
+	}
+
+	/**
+	 * Reserve count consecutive message ids. Only used with more than one shard; pass the first id to
+	 * releaseMessageIds once the insert has committed or failed.
+	 * @return the first reserved id
+	 */
+	public static int allocateMessageIds(int count) throws SQLException {
+		if (!prepared) {
+			prepare(false);
+		}
+		synchronized (pendingIds) {
+			int first = lastMessageId.getAndAdd(count) + 1;
+			pendingIds.put(first, count);
+			return first;
+		}
+	}
+
+	/**
+	 * Mark the ids reserved from first as finished, whether their insert committed or not.
+	 */
+	public static void releaseMessageIds(int first) {
+		synchronized (pendingIds) {
+			pendingIds.remove(first);
+		}
+	}
+
+	/**
+	 * @return the id below the lowest one this process has reserved and not yet released, so every id up to it
+	 *         is settled; no bound (Integer.MAX_VALUE) while nothing is pending or with a single shard, where ids
+	 *         come from the identity column. Rows the shards already hold are never capped, whoever wrote them.
+	 */
+	public static int getSettledMessageId() {
+		if (SHARDS == 1) {
+			return Integer.MAX_VALUE;
+		}
+		synchronized (pendingIds) {
+			return pendingIds.isEmpty() ? Integer.MAX_VALUE : pendingIds.firstKey() - 1;
+		}
+	}
+
+	/**
+	 * @return a pooled connection to the given shard; close it to return it. The first call after startup
+	 *         also creates missing shard tables and moves messages if the shard count has changed.
+	 */
+	public static Connection getConnection(int shard) throws SQLException {
+		if (!prepared) {
+			prepare(false);
+		}
+		return connect(shard);
+	}
+
+	/**
+	 * @return a connection for a read on the given shard; with a single shard it may come from the read replica
+	 *         (see ConnectionUtil.getReadConnection)
+	 */
+	public static Connection getReadConnection(int shard) throws SQLException {
+		return SHARDS == 1 ? ConnectionUtil.getReadConnection() : getConnection(shard);
+	}
+
+	private static Connection connect(int shard) throws SQLException {
+		return shard == 0 ? ConnectionUtil.getConnection() : pools[shard].getConnection();
+	}
+
+	/**
+	 * Recreate the shard tables after resetTestDatabase has rebuilt shard 0, and move the seeded messages
+	 * to their shards. A single shard still empties the shards of an earlier, larger layout, so their old
+	 * messages are not moved back into the fresh database.
+	 */
+	static void reset() throws SQLException {
+		prepare(true);
+	}
+
+	// Create the shard tables, move messages stored under a different shard count, and start the id counter.
+	// A reset drops every shard table but shard 0's first, so shard data older than the reset is never moved.
+	private static synchronized void prepare(boolean dropShards) throws SQLException {
+		if (prepared && !dropShards) {
+			return;
+		}
+		try (Connection connection = connect(0);
+				Statement statement = connection.createStatement()) {
+			if (SHARDS == 1 && !hasShardLayout(statement)) {
+				prepared = true; // Never sharded, nothing to move and ids come from the identity column
+				return;
+			}
+			statement.execute("create table if not exists shard_layout (shards int)");
+			int recorded = 1;
+			try (ResultSet resultSet = statement.executeQuery("select shards from shard_layout")) {
+				if (resultSet.next()) {
+					recorded = resultSet.getInt(1);
+				}
+			}
+			int layoutShards = Math.max(recorded, SHARDS);
+
+			for (int shard = 1; shard < layoutShards; shard++) {
+				try (Connection shardConnection = openShard(shard)) {
+					if (dropShards) {
+						try (Statement shardStatement = shardConnection.createStatement()) {
+							shardStatement.execute("drop table if exists message");
+							shardStatement.execute("drop table if exists account");
+							shardStatement.execute("drop table if exists schema_version");
+						}
+					}
+					MigrationRunner.migrateMessagesOnly(shardConnection);
+				}
+			}
+
+			if (dropShards || recorded != SHARDS) {
+				rebalance(layoutShards);
+				statement.execute("delete from shard_layout");
+				statement.execute("insert into shard_layout (shards) values (" + SHARDS + ")");
+			}
+		}
+		startMessageIds();
+		prepared = true;
+	}
+
+	private static boolean hasShardLayout(Statement statement) throws SQLException {
+		try (ResultSet resultSet = statement.executeQuery("select count(*) from information_schema.tables where table_name = 'SHARD_LAYOUT'")) {
+			resultSet.next();
+			return resultSet.getInt(1) > 0;
+		}
+	}
+
+	// Move every message that is not on shardFor(posted_by), keeping its id. Shards past the current count,
+	// left over from a larger layout, are emptied into the current ones. A row is copied before it is deleted,
+	// and the copy is a merge, so a move interrupted half way is simply redone on the next start.
+	private static void rebalance(int layoutShards) throws SQLException {
+		for (int shard = 0; shard < layoutShards; shard++) {
+			List<Object[]> misplaced = new ArrayList<>();
+			try (Connection connection = openShard(shard);
+					Statement statement = connection.createStatement();
+					ResultSet resultSet = statement.executeQuery("select * from message")) {
+				while (resultSet.next()) {
+					if (shard >= SHARDS || shardFor(resultSet.getInt("posted_by")) != shard) {
+						misplaced.add(new Object[] { resultSet.getInt("message_id"), resultSet.getInt("posted_by"),
+								resultSet.getString("message_text"), resultSet.getLong("time_posted_epoch") });
+					}
+				}
+			}
+			for (Object[] row : misplaced) {
+				try (Connection connection = connect(shardFor((Integer) row[1]));
+						PreparedStatement preparedStatement = connection.prepareStatement(
+								"merge into message (message_id, posted_by, message_text, time_posted_epoch) key (message_id) values (?, ?, ?, ?)")) {
+					for (int i = 0; i < row.length; i++) {
+						preparedStatement.setObject(i + 1, row[i]);
+					}
+					preparedStatement.executeUpdate();
+				}
+				try (Connection connection = openShard(shard);
+						PreparedStatement preparedStatement = connection.prepareStatement("delete from message where message_id = ?")) {
+					preparedStatement.setInt(1, (Integer) row[0]);
+					preparedStatement.executeUpdate();
+				}
+			}
+		}
+	}
+
+	// Start the id counter above every message id stored on any shard, and every shard's identity column with it
+	private static void startMessageIds() throws SQLException {
+		int max = 0;
+		for (int shard = 0; shard < SHARDS; shard++) {
+			try (Connection connection = connect(shard);
+					Statement statement = connection.createStatement();
+					ResultSet resultSet = statement.executeQuery("select coalesce(max(message_id), 0) from message")) {
+				resultSet.next();
+				max = Math.max(max, resultSet.getInt(1));
+			}
+		}
+		for (int shard = 0; shard < SHARDS; shard++) {
+			try (Connection connection = connect(shard);
+					Statement statement = connection.createStatement()) {
+				statement.execute("alter table message alter column message_id restart with " + (max + 1));
+			}
+		}
+		lastMessageId.set(max);
+	}
+
+	// A pooled connection for a current shard, or a plain one for a retired shard
+	private static Connection openShard(int shard) throws SQLException {
+		return shard < SHARDS ? connect(shard) : DriverManager.getConnection(shardUrl(URL, shard), "sa", "sa");
+	}
+
+	// The database name is the url up to the first ';'
+	private static String shardUrl(String url, int shard) {
+		int end = url.indexOf(';');
+		return end < 0 ? url + "-shard" + shard : url.substring(0, end) + "-shard" + shard + url.substring(end);
+	}
+}
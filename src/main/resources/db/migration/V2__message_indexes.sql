@@ -0,0 +1,4 @@
+-- Timeline reads (GET /accounts/{account_id}/messages) filter on posted_by and page on time.
+create index if not exists idx_message_posted_by_time on message (posted_by, time_posted_epoch, message_id);
+-- Time-ordered feed pages on (time_posted_epoch, message_id).
+create index if not exists idx_message_time_id on message (time_posted_epoch, message_id);
@@ -0,0 +1,2 @@
+-- The in-memory engine no longer mirrors direct h2 writes; drop the trigger earlier versions left on message.
+drop trigger if exists message_memory_mirror;
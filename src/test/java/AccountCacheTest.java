@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class AccountCacheTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * POST localhost:8080/login as testuser1 until the stored password is rehashed, then once more
+     *
+     * Expected Response:
+     *  Status Code: 200, with the last login answered by the username cache: one more hit and no more misses
+     */
+    @Test
+    public void loginServedFromCache() throws IOException, InterruptedException {
+        Assert.assertEquals(200, login("testuser1", "password"));
+        Assert.assertEquals(200, login("testuser1", "password")); // The seeded plain password was rehashed by the first login
+
+        double hits = metric("cache_hits_total{cache=\"username\"}");
+        double misses = metric("cache_misses_total{cache=\"username\"}");
+        Assert.assertEquals(200, login("testuser1", "password"));
+        Assert.assertEquals(hits + 1, metric("cache_hits_total{cache=\"username\"}"), 0);
+        Assert.assertEquals(misses, metric("cache_misses_total{cache=\"username\"}"), 0);
+    }
+
+    /**
+     * POST localhost:8080/login as an unknown user, then POST localhost:8080/register with that username,
+     * then login and register again
+     *
+     * Expected Response:
+     *  The failed login is a miss that is not cached: the user registers (200) and logs in (200),
+     *  and the username is then taken (400)
+     */
+    @Test
+    public void failedLookupAndRegistrationLeaveNoStaleEntry() throws IOException, InterruptedException {
+        double misses = metric("cache_misses_total{cache=\"username\"}");
+        Assert.assertEquals(401, login("newuser", "password"));
+        Assert.assertEquals(misses + 1, metric("cache_misses_total{cache=\"username\"}"), 0);
+
+        Assert.assertEquals(200, register("newuser", "password"));
+        Assert.assertTrue(metric("cache_misses_total{cache=\"username\"}") > misses + 1); // Looked up again, not answered from a cached miss
+
+        Assert.assertEquals(200, login("newuser", "password"));
+        Assert.assertEquals(400, register("newuser", "password"));
+        Assert.assertEquals(401, login("newuser", "wrong password"));
+    }
+
+    private int login(String username, String password) throws IOException, InterruptedException {
+        return post("/login", username, password);
+    }
+
+    private int register(String username, String password) throws IOException, InterruptedException {
+        return post("/register", username, password);
+    }
+
+    private int post(String path, String username, String password) throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"" + username + "\", " +
+                        "\"password\": \"" + password + "\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    private double metric(String series) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        for (String line : webClient.send(request, HttpResponse.BodyHandlers.ofString()).body().split("\n")) {
+            if (line.startsWith(series + " ")) {
+                return Double.parseDouble(line.substring(series.length() + 1));
+            }
+        }
+        throw new AssertionError("No " + series + " in /metrics");
+    }
+}
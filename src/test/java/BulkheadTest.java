@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Service.Bulkhead;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class BulkheadTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with a feed pool of one slot and a
+     * queue of one, and create a new webClient.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("bulkhead.feed.threads", "1");
+        System.setProperty("bulkhead.feed.queue", "1");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        app.stop();
+        System.clearProperty("bulkhead.feed.threads");
+        System.clearProperty("bulkhead.feed.queue");
+    }
+
+    /**
+     * Occupy the feed pool's slot and queue with stalled scans, then read the full feed, a single message,
+     * a page and log in
+     *
+     * Expected Response:
+     *  Status Code: 503 for the full feed, 200 for everything else; the rejection is counted for the feed pool
+     */
+    @Test
+    public void saturatedFeedPoolDoesNotBlockOtherRoutes() throws IOException, InterruptedException {
+        stall(pool("feed"), 2);
+
+        Assert.assertEquals(503, send("GET", "/messages", null).statusCode());
+        Assert.assertEquals(200, send("GET", "/messages/1", null).statusCode());
+        Assert.assertEquals(200, send("GET", "/messages?limit=10", null).statusCode());
+        Assert.assertEquals(200, send("POST", "/login", "{\"username\": \"testuser1\", \"password\": \"password\"}").statusCode());
+        Assert.assertTrue(send("GET", "/metrics", null).body().contains("bulkhead_rejected_total{pool=\"feed\"} 1"));
+    }
+
+    /**
+     * Stall the feed pool, then let it go and read the full feed
+     *
+     * Expected Response:
+     *  Status Code: 503 while stalled, 200 once the pool has drained
+     */
+    @Test
+    public void feedReadsResumeWhenThePoolDrains() throws IOException, InterruptedException {
+        Bulkhead feed = pool("feed");
+        stall(feed, 2);
+        Assert.assertEquals(503, send("GET", "/messages", null).statusCode());
+
+        release.countDown();
+        while (feed.getActiveThreads() > 0 || feed.getQueueDepth() > 0) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(200, send("GET", "/messages", null).statusCode());
+    }
+
+    private Bulkhead pool(String name) {
+        for (Bulkhead pool : socialMediaController.getBulkheads()) {
+            if (pool.getName().equals(name)) {
+                return pool;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    // Start requests that take a slot or a place in the queue and hold it until the test releases them
+    private void stall(Bulkhead pool, int tasks) throws InterruptedException {
+        for (int i = 0; i < tasks; i++) {
+            Thread.ofVirtual().start(() -> {
+                if (!pool.enter()) {
+                    return;
+                }
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    pool.exit();
+                }
+            });
+        }
+        while (pool.getActiveThreads() + pool.getQueueDepth() < tasks) {
+            Thread.sleep(10);
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Service.ConcurrencyLimiter;
+import Service.ConcurrencyLimiter.Priority;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConcurrencyLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    ConcurrencyLimiter limiter;
+    List<ConcurrencyLimiter.Permit> held = new ArrayList<>();
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient.
+     * Tests stand in for requests already in flight by taking permits from the app's limiter directly.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        limiter = socialMediaController.getConcurrencyLimiter();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        for (ConcurrencyLimiter.Permit permit : held) {
+            permit.release();
+        }
+        app.stop();
+    }
+
+    /**
+     * Fill the bulk share of the limit, then read the full feed, a page, a single message and log in
+     *
+     * Expected Response:
+     *  Status Code: 503 for the full feed; 200 for the page, the message and the login
+     */
+    @Test
+    public void bulkReadsAreShedFirst() throws IOException, InterruptedException {
+        fill(Priority.BULK);
+
+        Assert.assertEquals(503, send("GET", "/messages", null).statusCode());
+        Assert.assertEquals(200, send("GET", "/messages?limit=10", null).statusCode());
+        Assert.assertEquals(200, send("GET", "/messages/1", null).statusCode());
+        Assert.assertEquals(200, login().statusCode());
+    }
+
+    /**
+     * Fill the whole limit, then read a single message and log in
+     *
+     * Expected Response:
+     *  Status Code: 503 for the read; 200 for the login, which may use the headroom above the limit
+     */
+    @Test
+    public void loginKeepsHeadroomAboveTheLimit() throws IOException, InterruptedException {
+        fill(Priority.BULK);
+        fill(Priority.NORMAL);
+
+        Assert.assertEquals(503, send("GET", "/messages/1", null).statusCode());
+        Assert.assertEquals(200, login().statusCode());
+    }
+
+    /**
+     * Fill the whole limit, then free it and read the full feed
+     *
+     * Expected Response:
+     *  Status Code: 503 while full, 200 once the requests in flight have finished
+     */
+    @Test
+    public void capacityComesBackWhenRequestsFinish() throws IOException, InterruptedException {
+        fill(Priority.NORMAL);
+        Assert.assertEquals(503, send("GET", "/messages", null).statusCode());
+
+        releaseAll();
+        Assert.assertEquals(200, send("GET", "/messages", null).statusCode());
+    }
+
+    private void fill(Priority priority) {
+        ConcurrencyLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire(priority)) != null) {
+            held.add(permit);
+        }
+    }
+
+    private void releaseAll() {
+        for (ConcurrencyLimiter.Permit permit : held) {
+            permit.release();
+        }
+        held.clear();
+    }
+
+    private HttpResponse<String> login() throws IOException, InterruptedException {
+        return send("POST", "/login", "{\"username\": \"testuser1\", \"password\": \"password\"}");
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
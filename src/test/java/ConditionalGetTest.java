@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * GET localhost:8080/messages/1 twice with the returned ETag, then PATCH the message and GET with the old ETag
+     *
+     * Expected Response:
+     *  Status Code: 304 with an empty body, then 200 with the updated message and a new ETag
+     */
+    @Test
+    public void getMessageByIdNotModifiedUntilUpdated() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages/1", null);
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        Assert.assertTrue(etag.startsWith("W/\""));
+
+        HttpResponse<String> second = get("/messages/1", etag);
+        Assert.assertEquals(304, second.statusCode());
+        Assert.assertEquals("", second.body());
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> third = get("/messages/1", etag);
+        Assert.assertEquals(200, third.statusCode());
+        Assert.assertEquals(new Message(1, 1, "updated message", 1669947792), objectMapper.readValue(third.body(), Message.class));
+        Assert.assertNotEquals(etag, third.headers().firstValue("ETag").orElseThrow());
+    }
+
+    /**
+     * GET localhost:8080/accounts/1/messages with the returned ETag, then POST a message by account 1 and GET again
+     *
+     * Expected Response:
+     *  Status Code: 304, then 200 with both messages
+     */
+    @Test
+    public void getTimelineNotModifiedUntilNewMessage() throws IOException, InterruptedException {
+        String etag = get("/accounts/1/messages", null).headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(304, get("/accounts/1/messages", "\"other\", " + etag).statusCode());
+
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947800}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = get("/accounts/1/messages", etag);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(2, objectMapper.readValue(response.body(), Message[].class).length);
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
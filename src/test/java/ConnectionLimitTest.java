@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConnectionLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    List<Connection> held = new ArrayList<>();
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient.
+     * Only meaningful against h2, the in-memory engine does not read through the pool.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        Assume.assumeFalse("memory".equals(System.getProperty("storage")));
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        ConnectionUtil.setMaxWaiting(Integer.getInteger("pool.maxWaiting", 1024));
+        for (Connection connection : held) {
+            connection.close();
+        }
+        if (app != null) {
+            app.stop();
+        }
+    }
+
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 while every pooled connection (the replica's too) is taken and no more
+     * callers may wait for one (pool.maxWaiting=0)
+     *
+     * Expected Response:
+     *  Status Code: 503, well before the pool's acquire timeout
+     */
+    @Test
+    public void getMessageNoConnectionToWaitFor() throws IOException, InterruptedException, SQLException {
+        for (int i = 0; i < ConnectionUtil.getPoolStats().getMaxSize(); i++) {
+            held.add(ConnectionUtil.getConnection());
+            if (ConnectionUtil.isReplicaEnabled()) {
+                held.add(ConnectionUtil.getReplicaConnection()); // Same size as the primary's pool
+            }
+        }
+        ConnectionUtil.setMaxWaiting(0);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        Assert.assertEquals(503, response.statusCode());
+        Assert.assertTrue("Took " + elapsedMs + "ms", elapsedMs < 2000);
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessageBatchResult;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class CreateMessageBatchTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with valid and invalid messages mixed
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per item, with generated ids for the valid ones and 400 for the others
+     */
+    @Test
+    public void createMessageBatchMixedItems() throws IOException, InterruptedException {
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" +
+                        "{\"posted_by\":1, \"message_text\": \"batch message 1\", \"time_posted_epoch\": 1669947793}, " +
+                        "{\"posted_by\":1, \"message_text\": \"\", \"time_posted_epoch\": 1669947794}, " +
+                        "{\"posted_by\":3, \"message_text\": \"unknown user\", \"time_posted_epoch\": 1669947795}, " +
+                        "{\"posted_by\":1, \"message_text\": \"batch message 2\", \"time_posted_epoch\": 1669947796}" +
+                        "]"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assert.assertEquals(200, status);
+
+        List<MessageBatchResult> expectedResult = new ArrayList<>();
+        expectedResult.add(new MessageBatchResult(0, 200, new Message(2, 1, "batch message 1", 1669947793)));
+        expectedResult.add(new MessageBatchResult(1, 400, null));
+        expectedResult.add(new MessageBatchResult(2, 400, null));
+        expectedResult.add(new MessageBatchResult(3, 200, new Message(3, 1, "batch message 2", 1669947796)));
+        List<MessageBatchResult> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<MessageBatchResult>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+
+        HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/3"))
+                .build();
+        HttpResponse getResponse = webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(new Message(3, 1, "batch message 2", 1669947796), objectMapper.readValue(getResponse.body().toString(), Message.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a body that is not an array
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void createMessageBatchNotAnArray() throws IOException, InterruptedException {
+        HttpRequest postBatchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("null"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postBatchRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body().toString());
+    }
+}
@@ -148,5 +148,31 @@ public class CreateMessageTest {
         Assert.assertEquals("", response.body().toString());
     }
 
+    /**
+     * Sending an http request to POST localhost:8080/messages with the same text as a message already in the db
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the new message, with its own message_id
+     */
+    @Test
+    public void createMessageDuplicateTextGetsNewId() throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"test message 1\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assert.assertEquals(200, status);
+
+        Message expectedResult = new Message(2, 1, "test message 1", 1669947793);
+        Message actualResult = objectMapper.readValue(response.body().toString(), Message.class);
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
 
-}
+}
\ No newline at end of file
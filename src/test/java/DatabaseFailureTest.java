@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.ShardRouter;
+import io.javalin.Javalin;
+
+public class DatabaseFailureTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, then drop the message table on every shard so
+     * every message query fails. Only meaningful against h2, the in-memory engine never reads the table after startup.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, SQLException {
+        Assume.assumeFalse("memory".equals(System.getProperty("storage")));
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        for (int shard = 0; shard < ShardRouter.getShardCount(); shard++) {
+            try (Connection connection = ShardRouter.getConnection(shard);
+                    Statement statement = connection.createStatement()) {
+                statement.executeUpdate("drop table message cascade");
+            }
+        }
+        Thread.sleep(1000); // Also lets a read replica notice it can no longer follow the primary
+    }
+
+    @After
+    public void tearDown() {
+        if (app != null) {
+            app.stop();
+        }
+    }
+
+
+    /**
+     * Sending an http request to GET localhost:8080/messages when the query fails
+     *
+     * Expected Response:
+     *  Status Code: 500, not an empty list
+     */
+    @Test
+    public void getAllMessagesDatabaseFailure() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(500, response.statusCode());
+    }
+
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 when the query fails
+     *
+     * Expected Response:
+     *  Status Code: 500, not an empty body
+     */
+    @Test
+    public void getMessageByIdDatabaseFailure() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(500, response.statusCode());
+    }
+
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a valid message when the insert fails
+     *
+     * Expected Response:
+     *  Status Code: 500, not 400
+     */
+    @Test
+    public void createMessageDatabaseFailure() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(500, response.statusCode());
+    }
+}
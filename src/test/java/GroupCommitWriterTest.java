@@ -0,0 +1,140 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.InMemoryAccountRepository;
+import DAO.InMemoryMessageRepository;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Service.GroupCommitWriter;
+import Util.ConnectionUtil;
+import Util.ShardRouter;
+
+public class GroupCommitWriterTest {
+    MessageDAO messageDAO;
+
+    /**
+     * Before every test, reset the database. The writers below commit straight to h2 through a MessageDAO.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new MessageDAO();
+    }
+
+    /**
+     * Messages submitted within one flush interval are committed together as a single group, and every future
+     * completes with its own generated message_id.
+     */
+    @Test
+    public void groupCommitBatchesMessages() throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(messageDAO, 64, 500, 64, 100);
+
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(writer.submit(new Message(1, "grouped " + i, 1669947792)));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            Message inserted = futures.get(i).get();
+            Assert.assertNotNull(inserted);
+            Assert.assertEquals("grouped " + i, inserted.getMessage_text());
+            Assert.assertEquals(inserted, messageDAO.getMessageById(inserted.getMessage_id()));
+        }
+        Assert.assertEquals(1, writer.getGroupsCommitted());
+        Assert.assertEquals(10, writer.getMessagesCommitted());
+        Assert.assertEquals(10.0, writer.getAvgGroupSize(), 0.0);
+        writer.shutdown();
+    }
+
+    /**
+     * A group holding one row the database refuses (posted_by has no account) is rolled back and retried one by one:
+     * the bad row's future completes with null, its neighbours are stored, and each retried insert counts as a group
+     * of one so the average group size is not inflated.
+     */
+    @Test
+    public void groupCommitOneBadRowInGroup() throws Exception {
+        Assume.assumeTrue(ShardRouter.getShardCount() == 1); // Only shard 0 has the foreign key to account
+        GroupCommitWriter writer = new GroupCommitWriter(messageDAO, 64, 500, 64, 100);
+
+        CompletableFuture<Message> first = writer.submit(new Message(1, "before", 1669947792));
+        CompletableFuture<Message> bad = writer.submit(new Message(999, "no such account", 1669947792));
+        CompletableFuture<Message> last = writer.submit(new Message(1, "after", 1669947792));
+
+        Assert.assertNull(bad.get());
+        Assert.assertEquals("before", messageDAO.getMessageById(first.get().getMessage_id()).getMessage_text());
+        Assert.assertEquals("after", messageDAO.getMessageById(last.get().getMessage_id()).getMessage_text());
+        Assert.assertEquals(2, writer.getGroupsCommitted());
+        Assert.assertEquals(2, writer.getMessagesCommitted());
+        Assert.assertEquals(1.0, writer.getAvgGroupSize(), 0.0);
+        writer.shutdown();
+    }
+
+    /**
+     * Shutting the writer down still commits the messages already queued, then refuses new ones.
+     */
+    @Test
+    public void groupCommitShutdownCommitsQueued() throws Exception {
+        GroupCommitWriter writer = new GroupCommitWriter(messageDAO, 64, 500, 64, 100);
+
+        CompletableFuture<Message> queued = writer.submit(new Message(1, "queued", 1669947792));
+        writer.shutdown();
+
+        Assert.assertEquals("queued", messageDAO.getMessageById(queued.get(5, TimeUnit.SECONDS).getMessage_id()).getMessage_text());
+        try {
+            writer.submit(new Message(1, "too late", 1669947792)).get(5, TimeUnit.SECONDS);
+            Assert.fail("A message was accepted after shutdown");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    /**
+     * Messages submitted from several threads while the writer shuts down are each either committed or refused;
+     * none is left in the queue with a future that never completes. The race is narrow, so it is run many times,
+     * against the in-memory engine to keep each round short.
+     */
+    @Test
+    public void groupCommitShutdownCompletesRacingSubmits() throws Exception {
+        InMemoryAccountRepository accounts = new InMemoryAccountRepository();
+        accounts.load(new Account(1, "testuser1", "password"));
+        InMemoryMessageRepository messages = new InMemoryMessageRepository(accounts);
+
+        for (int round = 0; round < 200; round++) {
+            GroupCommitWriter writer = new GroupCommitWriter(messages, 4, 1, 2, 100);
+            List<CompletableFuture<Message>> futures = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread submitter = new Thread(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        futures.add(writer.submit(new Message(1, "racing " + i, 1669947792)));
+                    }
+                });
+                submitters.add(submitter);
+                submitter.start();
+            }
+            writer.shutdown();
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+
+            for (CompletableFuture<Message> future : futures) {
+                try {
+                    Assert.assertNotNull(future.get(5, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+                }
+            }
+        }
+    }
+}
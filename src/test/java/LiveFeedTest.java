@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class LiveFeedTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Open GET localhost:8080/messages/live, then POST a message and PATCH it
+     *
+     * Expected Response:
+     *  Status Code: 200, text/event-stream with a "created" and then an "updated" event carrying the message
+     */
+    @Test
+    public void liveFeedStreamsCreatedAndUpdated() throws Exception {
+        Iterator<String> lines = open("/messages/live");
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, \"message_text\": \"live post\", \"time_posted_epoch\": 1669947800}"))
+                .header("Content-Type", "application/json")
+                .build());
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"edited post\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+
+        Assert.assertEquals("event: created", nextLine(lines, "event:"));
+        Assert.assertEquals(new Message(2, 1, "live post", 1669947800), data(nextLine(lines, "data:")));
+        Assert.assertEquals("event: updated", nextLine(lines, "event:"));
+        Assert.assertEquals(new Message(2, 1, "edited post", 1669947800), data(nextLine(lines, "data:")));
+    }
+
+    /**
+     * Open GET localhost:8080/messages/live?posted_by=2, then POST a message by account 1 and one by a new account 2
+     *
+     * Expected Response:
+     *  Status Code: 200, only the event for account 2's message
+     */
+    @Test
+    public void liveFeedFiltersByPostedBy() throws Exception {
+        Iterator<String> lines = open("/messages/live?posted_by=2");
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, \"message_text\": \"not followed\", \"time_posted_epoch\": 1669947800}"))
+                .header("Content-Type", "application/json")
+                .build());
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"user\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":2, \"message_text\": \"followed\", \"time_posted_epoch\": 1669947801}"))
+                .header("Content-Type", "application/json")
+                .build());
+
+        Assert.assertEquals(new Message(3, 2, "followed", 1669947801), data(nextLine(lines, "data:")));
+    }
+
+    /**
+     * POST 20 messages, open GET localhost:8080/messages/live, then send a PATCH and a DELETE for every message at
+     * the same time
+     *
+     * Expected Response:
+     *  Status Code: 200, the event ids of each message increase and none has an "updated" event after its "deleted" one
+     */
+    @Test
+    public void liveFeedOrdersEventsOfOneMessage() throws Exception {
+        int count = 20;
+        for (int i = 0; i < count; i++) {
+            send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, \"message_text\": \"racing " + i + "\", \"time_posted_epoch\": 1669947800}"))
+                    .header("Content-Type", "application/json")
+                    .build());
+        }
+        Iterator<String> lines = open("/messages/live");
+
+        List<CompletableFuture<HttpResponse<String>>> writes = new ArrayList<>();
+        for (int message_id = 2; message_id < 2 + count; message_id++) {
+            writes.add(webClient.sendAsync(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/" + message_id))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"edited\"}"))
+                    .header("Content-Type", "application/json")
+                    .build(), HttpResponse.BodyHandlers.ofString()));
+            writes.add(webClient.sendAsync(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/" + message_id))
+                    .DELETE()
+                    .build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        int deletes = 0;
+        for (int i = 0; i < writes.size(); i++) {
+            HttpResponse<String> response = writes.get(i).get(10, TimeUnit.SECONDS);
+            if (i % 2 == 1 && response.statusCode() == 200 && !response.body().isEmpty()) {
+                deletes++; // Writes turned away under load send no event
+            }
+        }
+        Assert.assertTrue(deletes > 0);
+
+        Map<Integer, Long> lastIds = new HashMap<>();
+        Set<Integer> deleted = new HashSet<>();
+        while (deleted.size() < deletes) {
+            long id = Long.parseLong(nextLine(lines, "id:").substring("id:".length()).trim());
+            String event = nextLine(lines, "event:");
+            Message message = data(nextLine(lines, "data:"));
+            Long lastId = lastIds.put(message.getMessage_id(), id);
+            Assert.assertTrue(lastId == null || id > lastId);
+            Assert.assertFalse("updated after deleted: " + message, deleted.contains(message.getMessage_id()));
+            if (event.equals("event: deleted")) {
+                deleted.add(message.getMessage_id());
+            }
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/metrics on a server running platform threads
+     *
+     * Expected Response:
+     *  Status Code: 200, live feeds are capped at a quarter of the server's threads, so they cannot starve other routes
+     */
+    @Test
+    public void liveFeedsLeaveThreadsForOtherRoutes() throws Exception {
+        Assume.assumeFalse(Boolean.getBoolean("server.virtualThreads"));
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        int maxThreads = Integer.getInteger("server.maxThreads", 250);
+        Assert.assertTrue(response.body().contains("\nfeed_max_subscribers " + Math.min(maxThreads / 4, Integer.getInteger("feed.maxSubscribers", 1000)) + "\n"));
+    }
+
+    private Iterator<String> open(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        HttpResponse<Stream<String>> response = webClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines()).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/event-stream"));
+        return response.body().iterator();
+    }
+
+    private void send(HttpRequest request) throws IOException, InterruptedException {
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    // The next line with the prefix, failing the test if it does not arrive within 5 seconds
+    private String nextLine(Iterator<String> lines, String prefix) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (line.startsWith(prefix)) {
+                    return line;
+                }
+            }
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private Message data(String line) throws IOException {
+        return objectMapper.readValue(line.substring("data:".length()).trim(), Message.class);
+    }
+}
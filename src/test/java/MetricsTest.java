@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1, then GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text with the route latency summary, the DAO timer and the pool gauges
+     */
+    @Test
+    public void getMetricsAfterRequest() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        String body = response.body();
+        Assert.assertTrue(body.contains("# TYPE http_request_duration_seconds summary"));
+        Assert.assertTrue(body.contains("http_request_duration_seconds{method=\"GET\",route=\"/messages/{message_id}\",status=\"200\",quantile=\"0.99\"}"));
+        Assert.assertTrue(body.contains("http_request_duration_seconds_count{method=\"GET\",route=\"/messages/{message_id}\",status=\"200\"}"));
+        Assert.assertTrue(body.contains("dao_rows_total{method=\"MessageDAO.getMessageById\"}"));
+        Assert.assertTrue(body.contains("db_pool_connections{state=\"active\"}"));
+    }
+}
@@ -0,0 +1,49 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionUtil;
+import Util.MigrationRunner;
+
+public class MigrationRunnerTest {
+
+    /**
+     * Before every test, reset the database, which applies every migration once.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Running the migrations again on an up to date database applies nothing.
+     */
+    @Test
+    public void migrateUpToDate() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            Assert.assertEquals(0, MigrationRunner.migrate(connection));
+        }
+    }
+
+    /**
+     * A migration whose script no longer matches the checksum recorded when it was applied stops the run.
+     */
+    @Test
+    public void migrateChangedScriptFails() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("update schema_version set checksum = 0 where version = 1");
+            }
+            try {
+                MigrationRunner.migrate(connection);
+                Assert.fail("A changed migration was accepted");
+            } catch (SQLException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains("V1__create_tables.sql"));
+            }
+        }
+    }
+}
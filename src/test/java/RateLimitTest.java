@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RateLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with tight write limits:
+     * POST /messages allows 2 at once then 1 per second, PATCH allows 1 at once then 1 per second.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("ratelimit.messages.create.perSecond", "1");
+        System.setProperty("ratelimit.messages.create.burst", "2");
+        System.setProperty("ratelimit.messages.update.perSecond", "1");
+        System.setProperty("ratelimit.messages.update.burst", "1");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("ratelimit.messages.create.perSecond");
+        System.clearProperty("ratelimit.messages.create.burst");
+        System.clearProperty("ratelimit.messages.update.perSecond");
+        System.clearProperty("ratelimit.messages.update.burst");
+    }
+
+    /**
+     * Post three messages as account 1 back to back, then one as a newly registered account
+     *
+     * Expected Response:
+     *  Status Code: 200, 200, then 429 with a Retry-After header; the other account still gets 200
+     */
+    @Test
+    public void postingOverTheBurstIsRejectedPerAccount() throws IOException, InterruptedException {
+        Assert.assertEquals(200, postMessage(1).statusCode());
+        Assert.assertEquals(200, postMessage(1).statusCode());
+
+        HttpResponse<String> limited = postMessage(1);
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertEquals("1", limited.headers().firstValue("Retry-After").orElse(null));
+
+        Assert.assertEquals(200, send("/register", "POST", "{\"username\": \"user2\", \"password\": \"password\"}").statusCode());
+        Assert.assertEquals(200, postMessage(2).statusCode());
+    }
+
+    /**
+     * Post until limited, wait for the Retry-After, then post again
+     *
+     * Expected Response:
+     *  Status Code: 429, then 200 once a token has been refilled
+     */
+    @Test
+    public void postingSucceedsAgainAfterRetryAfter() throws IOException, InterruptedException {
+        postMessage(1);
+        postMessage(1);
+        HttpResponse<String> limited = postMessage(1);
+        Assert.assertEquals(429, limited.statusCode());
+
+        Thread.sleep(Long.parseLong(limited.headers().firstValue("Retry-After").get()) * 1000);
+        Assert.assertEquals(200, postMessage(1).statusCode());
+    }
+
+    /**
+     * PATCH localhost:8080/messages/1 twice in a row, with its own limit
+     *
+     * Expected Response:
+     *  Status Code: 200, then 429; message creation is unaffected
+     */
+    @Test
+    public void patchHasItsOwnLimit() throws IOException, InterruptedException {
+        Assert.assertEquals(200, send("/messages/1", "PATCH", "{\"message_text\": \"updated message\"}").statusCode());
+        Assert.assertEquals(429, send("/messages/1", "PATCH", "{\"message_text\": \"updated again\"}").statusCode());
+        Assert.assertEquals(200, postMessage(1).statusCode());
+    }
+
+    private HttpResponse<String> postMessage(int posted_by) throws IOException, InterruptedException {
+        return send("/messages", "POST", "{\"posted_by\": " + posted_by + ", \"message_text\": \"hello message\", \"time_posted_epoch\": 1669947792}");
+    }
+
+    private HttpResponse<String> send(String path, String method, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
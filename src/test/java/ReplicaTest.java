@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.ReplicaShipper;
+import io.javalin.Javalin;
+
+public class ReplicaTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web. Only runs with a read replica (-Dreplica.enabled=true) against h2.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        Assume.assumeTrue(ConnectionUtil.isReplicaEnabled());
+        Assume.assumeFalse("memory".equals(System.getProperty("storage")));
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        if (app != null) {
+            app.stop();
+        }
+    }
+
+    /**
+     * Wait for the replica to hold every write, then send an http request to GET localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the seeded message, read from the replica
+     */
+    @Test
+    public void getAllMessagesFromCaughtUpReplica() throws IOException, InterruptedException {
+        awaitCaughtUp();
+        double replicaReads = replicaReads();
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, getAllMessages());
+        Assert.assertTrue(replicaReads() > replicaReads);
+    }
+
+    /**
+     * Update and then delete message 1 straight on the primary, reading GET localhost:8080/messages right after each
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the updated message, then an empty list; never the replica's older copy
+     */
+    @Test
+    public void getAllMessagesSeesDirectPrimaryWrites() throws IOException, InterruptedException, SQLException {
+        awaitCaughtUp();
+
+        execute("update message set message_text = 'updated message' where message_id = 1");
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "updated message", 1669947792));
+        Assert.assertEquals(expected, getAllMessages());
+
+        execute("delete from message where message_id = 1");
+        Assert.assertTrue(getAllMessages().isEmpty());
+    }
+
+    /**
+     * Insert a message on the primary and roll it back
+     *
+     * Expected Response:
+     *  The replica is caught up again once the log is drained, the rolled back write does not hold it back
+     */
+    @Test
+    public void rolledBackWriteDoesNotHoldBackReplica() throws InterruptedException, SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(
+                        "insert into message (posted_by, message_text, time_posted_epoch) values (1, 'rolled back', 1669947792)")) {
+            connection.setAutoCommit(false);
+            preparedStatement.executeUpdate();
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+        Assert.assertFalse(ReplicaShipper.isCaughtUpAsOf(System.nanoTime()));
+        awaitCaughtUp();
+    }
+
+    private void awaitCaughtUp() throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!ReplicaShipper.isCaughtUpAsOf(System.nanoTime())) {
+            Assert.assertTrue("The replica never caught up", System.nanoTime() - deadline < 0);
+            Thread.sleep(10);
+        }
+    }
+
+    private List<Message> getAllMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private double replicaReads() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        String prefix = "db_reads_total{target=\"replica\"} ";
+        for (String line : webClient.send(request, HttpResponse.BodyHandlers.ofString()).body().split("\n")) {
+            if (line.startsWith(prefix)) {
+                return Double.parseDouble(line.substring(prefix.length()));
+            }
+        }
+        throw new AssertionError("No " + prefix + "in /metrics");
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ResponseCompressionTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * POST 100 messages in a batch, then GET localhost:8080/messages and GET localhost:8080/accounts/1/messages
+     * with Accept-Encoding: gzip, and once more with gzip refused
+     *
+     * Expected Response:
+     *  Status Code: 200, gzip-encoded bodies that decode to all 101 messages, then an uncompressed body
+     */
+    @Test
+    public void getLargeFeedsGzipped() throws IOException, InterruptedException {
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            batch.append(i == 0 ? "" : ",").append("{\"posted_by\":1, \"message_text\": \"message ").append(i).append("\", \"time_posted_epoch\": 1669947800}");
+        }
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(batch.append("]").toString()))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        for (String path : new String[] { "/messages", "/accounts/1/messages" }) {
+            HttpResponse<InputStream> response = get(path, "deflate, gzip;q=0.8");
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+            try (InputStream body = new GZIPInputStream(response.body())) {
+                Assert.assertEquals(101, objectMapper.readValue(body, Message[].class).length);
+            }
+        }
+
+        HttpResponse<InputStream> identity = get("/messages", "gzip;q=0, *");
+        Assert.assertFalse(identity.headers().firstValue("Content-Encoding").isPresent());
+        Assert.assertEquals(101, objectMapper.readValue(identity.body(), Message[].class).length);
+    }
+
+    /**
+     * GET localhost:8080/messages/1 with Accept-Encoding: gzip
+     *
+     * Expected Response:
+     *  Status Code: 200, uncompressed because the body is below the minimum size
+     */
+    @Test
+    public void getSmallResponseNotCompressed() throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = get("/messages/1", "gzip");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertFalse(response.headers().firstValue("Content-Encoding").isPresent());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), objectMapper.readValue(response.body(), Message.class));
+    }
+
+    private HttpResponse<InputStream> get(String path, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .header("Accept-Encoding", acceptEncoding)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+}
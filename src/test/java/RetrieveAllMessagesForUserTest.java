@@ -89,4 +89,35 @@ public class RetrieveAllMessagesForUserTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assert.assertTrue(actualResult.isEmpty());
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages, then PATCH localhost:8080/messages/1,
+     * then GET localhost:8080/accounts/1/messages again
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the second listing shows the edited text, never the earlier cached one
+     */
+    @Test
+    public void getAllMessagesFromUserAfterUpdate() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .build();
+        webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "updated message", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
 }
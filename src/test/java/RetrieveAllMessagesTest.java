@@ -3,9 +3,6 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,12 +15,14 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
+import DAO.Repositories;
 import Model.Message;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
 public class RetrieveAllMessagesTest {
     SocialMediaController socialMediaController;
+    Repositories repositories;
     HttpClient webClient;
     ObjectMapper objectMapper;
     Javalin app;
@@ -36,7 +35,8 @@ public class RetrieveAllMessagesTest {
     @Before
     public void setUp() throws InterruptedException {
         ConnectionUtil.resetTestDatabase();
-        socialMediaController = new SocialMediaController();
+        repositories = Repositories.create();
+        socialMediaController = new SocialMediaController(repositories);
         app = socialMediaController.startAPI();
         webClient = HttpClient.newHttpClient();
         objectMapper = new ObjectMapper();
@@ -100,14 +100,7 @@ public class RetrieveAllMessagesTest {
 
 
     private void removeInitialMessage(){
-        try {
-                Connection conn = ConnectionUtil.getConnection();
-                PreparedStatement ps = conn.prepareStatement("delete from message where message_id = ?");
-                ps.setInt(1, 1);
-                ps.executeUpdate();
-        } catch (SQLException e) {
-                e.printStackTrace();
-        }
+        repositories.getMessages().removeMessageById(1);
     }
 
 }
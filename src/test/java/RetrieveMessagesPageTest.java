@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.Repositories;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesPageTest {
+    SocialMediaController socialMediaController;
+    Repositories repositories;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        repositories = Repositories.create();
+        socialMediaController = new SocialMediaController(repositories);
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages?limit=2 and following next_cursor until it is null
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: pages of 2, 1 messages in message_id order, with a next_cursor only on the first page
+     */
+    @Test
+    public void getMessagesPagedByIdFollowsCursor() throws IOException, InterruptedException {
+        insertMessage(1, "test message 2", 1669947793);
+        insertMessage(1, "test message 3", 1669947791);
+
+        MessagePage firstPage = getPage("http://localhost:8080/messages?limit=2");
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedFirst.add(new Message(2, 1, "test message 2", 1669947793));
+        Assert.assertEquals(expectedFirst, firstPage.getMessages());
+        Assert.assertNotNull(firstPage.getNext_cursor());
+
+        MessagePage secondPage = getPage("http://localhost:8080/messages?limit=2&after=" + firstPage.getNext_cursor());
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(3, 1, "test message 3", 1669947791));
+        Assert.assertEquals(expectedSecond, secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?limit=1&order=time
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the user's oldest message first, and a cursor to the rest
+     */
+    @Test
+    public void getMessagesForUserPagedByTime() throws IOException, InterruptedException {
+        insertMessage(1, "test message 2", 1669947791);
+
+        MessagePage firstPage = getPage("http://localhost:8080/accounts/1/messages?limit=1&order=time");
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(2, 1, "test message 2", 1669947791));
+        Assert.assertEquals(expectedFirst, firstPage.getMessages());
+
+        MessagePage secondPage = getPage("http://localhost:8080/accounts/1/messages?limit=1&after=" + firstPage.getNext_cursor());
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expectedSecond, secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a cursor that was not issued by the server
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body:
+     */
+    @Test
+    public void getMessagesPagedMalformedCursor() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?after=not-a-cursor"))
+                .build();
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body().toString());
+    }
+
+    private MessagePage getPage(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body().toString(), MessagePage.class);
+    }
+
+    // Seed through the storage engine, so the message lands on its shard with an id from the engine
+    private void insertMessage(int posted_by, String message_text, long time_posted_epoch) {
+        repositories.getMessages().addMessage(message_text, posted_by, time_posted_epoch);
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * POST three messages, then GET localhost:8080/messages/search with an AND query, a phrase and a paged query
+     *
+     * Expected Response:
+     *  Status Code: 200, only the matching messages by message_id, with a cursor while more results remain
+     */
+    @Test
+    public void searchWordsPhrasesAndPages() throws IOException, InterruptedException {
+        post("{\"posted_by\":1, \"message_text\": \"Good morning, world\", \"time_posted_epoch\": 1669947800}");
+        post("{\"posted_by\":1, \"message_text\": \"morning coffee is good\", \"time_posted_epoch\": 1669947801}");
+        post("{\"posted_by\":1, \"message_text\": \"good night\", \"time_posted_epoch\": 1669947802}");
+
+        MessagePage both = search("good morning", null, null);
+        Assert.assertEquals(2, both.getMessages().size());
+        Assert.assertEquals(2, both.getMessages().get(0).getMessage_id());
+        Assert.assertEquals(3, both.getMessages().get(1).getMessage_id());
+        Assert.assertNull(both.getNext_cursor());
+
+        MessagePage phrase = search("\"good morning\"", null, null);
+        Assert.assertEquals(1, phrase.getMessages().size());
+        Assert.assertEquals(new Message(2, 1, "Good morning, world", 1669947800), phrase.getMessages().get(0));
+
+        MessagePage first = search("good", null, "2");
+        Assert.assertEquals(2, first.getMessages().size());
+        MessagePage second = search("good", first.getNext_cursor(), "2");
+        Assert.assertEquals(1, second.getMessages().size());
+        Assert.assertEquals(4, second.getMessages().get(0).getMessage_id());
+        Assert.assertNull(second.getNext_cursor());
+    }
+
+    /**
+     * PATCH message 1 and DELETE it, searching after each write
+     *
+     * Expected Response:
+     *  Status Code: 200, results follow the update and the delete
+     */
+    @Test
+    public void searchFollowsUpdateAndDelete() throws IOException, InterruptedException {
+        Assert.assertEquals(1, search("test message", null, null).getMessages().size());
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"renamed post\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(0, search("test", null, null).getMessages().size());
+        Assert.assertEquals(1, search("renamed", null, null).getMessages().size());
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build();
+        webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(0, search("renamed", null, null).getMessages().size());
+
+        HttpRequest emptyQuery = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/search?q="))
+                .build();
+        Assert.assertEquals(400, webClient.send(emptyQuery, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private void post(String body) throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private MessagePage search(String query, String after, String limit) throws IOException, InterruptedException {
+        String uri = "http://localhost:8080/messages/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                + (after == null ? "" : "&after=" + after) + (limit == null ? "" : "&limit=" + limit);
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder().uri(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), MessagePage.class);
+    }
+}
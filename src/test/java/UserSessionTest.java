@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Account;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class UserSessionTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Register a new user, then log in with the same password (stored hashed) and post a message with the token
+     *
+     * Expected Response:
+     *  Status Code: 200 for each call, with an X-Session-Token header on register and login
+     */
+    @Test
+    public void registerLoginAndPostWithToken() throws IOException, InterruptedException {
+        HttpResponse<String> registerResponse = post("/register", "{\"username\": \"user\", \"password\": \"password\"}", null);
+        Assert.assertEquals(200, registerResponse.statusCode());
+        Assert.assertTrue(registerResponse.headers().firstValue("X-Session-Token").isPresent());
+
+        HttpResponse<String> loginResponse = post("/login", "{\"username\": \"user\", \"password\": \"password\"}", null);
+        Assert.assertEquals(200, loginResponse.statusCode());
+        Assert.assertEquals(new Account(2, "user", "password"), objectMapper.readValue(loginResponse.body(), Account.class));
+        String token = loginResponse.headers().firstValue("X-Session-Token").orElseThrow();
+
+        HttpResponse<String> postResponse = post("/messages", "{\"posted_by\":2, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947792}", token);
+        Assert.assertEquals(200, postResponse.statusCode());
+
+        HttpResponse<String> wrongPassword = post("/login", "{\"username\": \"user\", \"password\": \"wrong\"}", null);
+        Assert.assertEquals(401, wrongPassword.statusCode());
+    }
+
+    /**
+     * Log in as testuser1 and try to post as another account, then with a forged token, then after logout
+     *
+     * Expected Response:
+     *  Status Code: 403, then 401, then 401
+     */
+    @Test
+    public void rejectMismatchedForgedAndRevokedTokens() throws IOException, InterruptedException {
+        String token = post("/login", "{\"username\": \"testuser1\", \"password\": \"password\"}", null)
+                .headers().firstValue("X-Session-Token").orElseThrow();
+        String body = "{\"posted_by\":2, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947792}";
+
+        Assert.assertEquals(403, post("/messages", body, token).statusCode());
+        Assert.assertEquals(401, post("/messages", body, token.substring(0, token.length() - 2) + "xx").statusCode());
+
+        Assert.assertEquals(200, post("/logout", "", token).statusCode());
+        Assert.assertEquals(401, post("/messages", body.replace("\"posted_by\":2", "\"posted_by\":1"), token).statusCode());
+    }
+
+    /**
+     * Register a second user and, logged in as them, update and delete testuser1's message 1, then a message that
+     * does not exist, then their own message
+     *
+     * Expected Response:
+     *  Status Code: 403 for message 1, which is left unchanged; 400 and 200 with an empty body for the missing
+     *  message; 200 for their own message
+     */
+    @Test
+    public void modifyOnlyOwnMessages() throws IOException, InterruptedException {
+        String token = post("/register", "{\"username\": \"user\", \"password\": \"password\"}", null)
+                .headers().firstValue("X-Session-Token").orElseThrow();
+        String patch = "{\"message_text\": \"changed\"}";
+
+        Assert.assertEquals(403, send("PATCH", "/messages/1", patch, token).statusCode());
+        Assert.assertEquals(403, send("DELETE", "/messages/1", "", token).statusCode());
+        Assert.assertTrue(send("GET", "/messages/1", "", null).body().contains("test message 1"));
+
+        Assert.assertEquals(400, send("PATCH", "/messages/100", patch, token).statusCode());
+        HttpResponse<String> deleteMissing = send("DELETE", "/messages/100", "", token);
+        Assert.assertEquals(200, deleteMissing.statusCode());
+        Assert.assertEquals("", deleteMissing.body());
+
+        String own = post("/messages", "{\"posted_by\":2, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947792}", token).body();
+        int message_id = objectMapper.readTree(own).get("message_id").asInt();
+        Assert.assertEquals(200, send("PATCH", "/messages/" + message_id, patch, token).statusCode());
+        Assert.assertEquals(200, send("DELETE", "/messages/" + message_id, "", token).statusCode());
+    }
+
+    private HttpResponse<String> post(String path, String body, String token) throws IOException, InterruptedException {
+        return send("POST", path, body, token);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body, String token) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json");
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}